@@ -0,0 +1,45 @@
+package bguspl.set.bench;
+
+import bguspl.set.Config;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Helpers shared by the benchmarks for creating the game environment objects.
+ */
+final class BenchSupport {
+
+    private BenchSupport() {}
+
+    /**
+     * Creates a logger that discards everything (so logging does not interfere with the measurements).
+     */
+    static Logger quietLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        return logger;
+    }
+
+    /**
+     * Creates a configuration with no delays, no players and logging turned off.
+     *
+     * @param logger    - the logger for the configuration.
+     * @param overrides - properties overriding the defaults (e.g. "FeatureSize", "Rows").
+     * @return - the configuration object.
+     */
+    static Config config(Logger logger, Properties overrides) {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "0");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("EndGamePauseSeconds", "0");
+        properties.putAll(overrides);
+        return new Config(logger, properties);
+    }
+}
@@ -0,0 +1,331 @@
+package bguspl.set.bench;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.SystemClock;
+import bguspl.set.ThreadLogger;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+/**
+ * End-to-end benchmark: runs complete games of a Dealer and N computer players in-process, with no user interface and
+ * no delays, and records latency distributions of the main game operations (in microseconds):
+ * <p>
+ * keyPressToToken - from an accepted key press until its token is placed/removed on the table.
+ * claimToVerdict  - from a player entering the claim queue until the dealer's verdict (or the claim was discarded).
+ * dealerLoop      - a dealer loop iteration that judged a claim: from the claim queue handing the dealer the claim
+ *                   until the dealer waits on the queue again (the verdict, and the board change if it was a set).
+ * boardRefill     - from the first card removed until the last card placed in a board change.
+ * <p>
+ * Usage: GameHarness [--players=N] [--rounds=N] [--turnTimeoutSeconds=S] [--maxGameSeconds=S] [--out=PATH]
+ * The results are written to PATH.csv and PATH.json (one game is one round).
+ */
+public class GameHarness {
+
+    private static final long NANOS_PER_MICRO = 1000;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final int PRESSES_PER_SECOND = 100_000;
+
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final LatencyHistogram keyPressToToken = histogram("keyPressToToken");
+    private final LatencyHistogram claimToVerdict = histogram("claimToVerdict");
+    private final LatencyHistogram dealerLoop = histogram("dealerLoop");
+    private final LatencyHistogram boardRefill = histogram("boardRefill");
+
+    private final int playerCount;
+    private final double turnTimeoutSeconds;
+    private HarnessPlayer[] players;
+    private long points;
+    private long gamesTimedOut;
+
+    private GameHarness(int playerCount, double turnTimeoutSeconds) {
+        this.playerCount = playerCount;
+        this.turnTimeoutSeconds = turnTimeoutSeconds;
+    }
+
+    private LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histograms.put(name, histogram);
+        return histogram;
+    }
+
+    /**
+     * Runs a single game to its end (or until maxGameMillis have passed).
+     */
+    private void runGame(long maxGameMillis) throws InterruptedException {
+        Logger logger = BenchSupport.quietLogger();
+        Properties properties = new Properties();
+        properties.put("ComputerPlayers", Integer.toString(playerCount));
+        properties.put("TurnTimeoutSeconds", Double.toString(turnTimeoutSeconds));
+        properties.put("TurnTimeoutWarningSeconds", "0");
+        properties.put("ComputerPressesPerSecond", Integer.toString(PRESSES_PER_SECOND));
+        Config config = BenchSupport.config(logger, properties);
+        Env env = new Env(logger, config, new RecordingUserInterface(), new UtilImpl(config), new RecordingClock());
+
+        Table table = new Table(env);
+        players = new HarnessPlayer[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new HarnessPlayer(env, dealer, table, i);
+
+        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
+        dealerThread.startWithLog();
+        dealerThread.join(maxGameMillis);
+        if (dealerThread.isAlive()) {
+            ++gamesTimedOut;
+            dealer.terminate();
+            dealerThread.joinWithLog();
+        }
+        for (Player player : players)
+            points += player.score();
+    }
+
+    /**
+     * A computer player that timestamps its key presses and claims.
+     */
+    private class HarnessPlayer extends Player {
+
+        private final ConcurrentLinkedQueue<Long> pressTimes = new ConcurrentLinkedQueue<>();
+        private boolean tokenEvent;
+
+        HarnessPlayer(Env env, Dealer dealer, Table table, int id) {
+            super(env, dealer, table, id, false);
+        }
+
+        @Override
+        public boolean keyPressed(int slot) {
+            long now = System.nanoTime();
+            boolean accepted = super.keyPressed(slot);
+            if (accepted) pressTimes.offer(now);
+            return accepted;
+        }
+
+        @Override
+        public void executeAction() {
+            tokenEvent = false;
+            super.executeAction();
+            if (!tokenEvent) pressTimes.poll(); // the key press did not change any token
+        }
+
+        /**
+         * Called by the user interface (on the player thread) when a token of this player is placed or removed.
+         */
+        void onTokenEvent(long now) {
+            if (tokenEvent) return;
+            tokenEvent = true;
+            Long pressed = pressTimes.poll();
+            if (pressed != null) keyPressToToken.record((now - pressed) / NANOS_PER_MICRO);
+        }
+
+        @Override
+        public void enterWaitingZone() {
+            long claimed = System.nanoTime();
+            super.enterWaitingZone();
+            claimToVerdict.record((System.nanoTime() - claimed) / NANOS_PER_MICRO);
+        }
+
+        @Override
+        public void newBoard() {
+            super.newBoard();
+            pressTimes.clear();
+        }
+    }
+
+    /**
+     * A system clock that times the dealer loop iterations. Only the dealer polls a queue on the clock (its sleep
+     * between iterations is a poll of the claim queue), so the time from a poll returning a claim until the next poll
+     * is the iteration that judged the claim.
+     */
+    private class RecordingClock extends SystemClock {
+
+        private long judging = -1;
+
+        @Override
+        public <T> T poll(BlockingQueue<T> queue, long millis) throws InterruptedException {
+            if (judging >= 0) dealerLoop.record((System.nanoTime() - judging) / NANOS_PER_MICRO);
+            judging = -1;
+            T claim = super.poll(queue, millis);
+            if (claim != null) judging = System.nanoTime();
+            return claim;
+        }
+    }
+
+    /**
+     * A user interface that draws nothing and derives the board refill times from the order of the calls.
+     * A board change removes cards and then places cards, so the refill span of a change ends at its last placed card,
+     * and it is recorded once the next change starts removing cards, or the countdown restarts or the game ends.
+     */
+    private class RecordingUserInterface implements UserInterface {
+
+        private long refillStart = -1;
+        private long refillEnd = -1;
+        private boolean refilled = false;
+
+        private void tokenEvent(int player) {
+            HarnessPlayer[] current = players;
+            if (current != null && player < current.length && current[player] != null)
+                current[player].onTokenEvent(System.nanoTime());
+        }
+
+        private synchronized void cardEvent(boolean placed) {
+            long now = System.nanoTime();
+            if (!placed && refilled) endRefill(); // the previous change is over
+            if (refillStart < 0) refillStart = now;
+            if (placed) {
+                refillEnd = now;
+                refilled = true;
+            }
+        }
+
+        private synchronized void endRefill() {
+            if (refilled) boardRefill.record((refillEnd - refillStart) / NANOS_PER_MICRO);
+            refillStart = -1;
+            refilled = false;
+        }
+
+        private synchronized void timerEvent() {
+            endRefill();
+        }
+
+        @Override
+        public void placeCard(int card, int slot) {
+            cardEvent(true);
+        }
+
+        @Override
+        public void removeCard(int slot) {
+            cardEvent(false);
+        }
+
+        @Override
+        public void placeToken(int player, int slot) {
+            tokenEvent(player);
+        }
+
+        @Override
+        public void removeTokens() {}
+
+        @Override
+        public void removeTokens(int slot) {}
+
+        @Override
+        public void removeToken(int player, int slot) {
+            tokenEvent(player);
+        }
+
+        @Override
+        public void startCountdown(long millies, long warnMillies) {
+            timerEvent();
+        }
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {
+            timerEvent();
+        }
+
+        @Override
+        public void setElapsed(long millies) {
+            timerEvent();
+        }
+
+        @Override
+        public void setFreeze(int player, long millies) {}
+
+        @Override
+        public void setScore(int player, int score) {}
+
+        @Override
+        public void announceWinner(int[] players) {
+            timerEvent();
+        }
+
+        @Override
+        public void dispose() {}
+    }
+
+    private void writeCsv(Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.print("metric,count,min,mean");
+            for (double percentile : PERCENTILES) out.print(",p" + percentile);
+            out.println(",max");
+            histograms.forEach((name, histogram) -> {
+                out.print(name + "," + histogram.count() + "," + histogram.min() + "," + String.format("%.1f", histogram.mean()));
+                for (double percentile : PERCENTILES) out.print("," + histogram.percentile(percentile));
+                out.println("," + histogram.max());
+            });
+        }
+    }
+
+    private void writeJson(Path path, int rounds, long elapsedMillis) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("{");
+            out.println("  \"players\": " + playerCount + ",");
+            out.println("  \"rounds\": " + rounds + ",");
+            out.println("  \"roundsTimedOut\": " + gamesTimedOut + ",");
+            out.println("  \"points\": " + points + ",");
+            out.println("  \"elapsedMillis\": " + elapsedMillis + ",");
+            out.println("  \"unit\": \"us\",");
+            out.println("  \"metrics\": {");
+            int remaining = histograms.size();
+            for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                StringBuilder sb = new StringBuilder("    \"").append(entry.getKey()).append("\": {")
+                        .append("\"count\": ").append(histogram.count())
+                        .append(", \"min\": ").append(histogram.min())
+                        .append(", \"mean\": ").append(String.format("%.1f", histogram.mean()));
+                for (double percentile : PERCENTILES)
+                    sb.append(", \"p").append(percentile).append("\": ").append(histogram.percentile(percentile));
+                sb.append(", \"max\": ").append(histogram.max()).append("}");
+                out.println(sb.append(--remaining > 0 ? "," : ""));
+            }
+            out.println("  }");
+            out.println("}");
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("players", "4");
+        options.put("rounds", "5");
+        options.put("turnTimeoutSeconds", "1");
+        options.put("maxGameSeconds", "120");
+        options.put("out", "target/harness");
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2 || !options.containsKey(option[0]))
+                throw new IllegalArgumentException("unknown option: " + arg);
+            options.put(option[0], option[1]);
+        }
+
+        int rounds = Integer.parseInt(options.get("rounds"));
+        long maxGameMillis = (long) (Double.parseDouble(options.get("maxGameSeconds")) * 1000.0);
+        GameHarness harness = new GameHarness(Integer.parseInt(options.get("players")),
+                Double.parseDouble(options.get("turnTimeoutSeconds")));
+
+        long start = System.currentTimeMillis();
+        for (int round = 0; round < rounds; ++round)
+            harness.runGame(maxGameMillis);
+        long elapsedMillis = System.currentTimeMillis() - start;
+
+        Path out = Paths.get(options.get("out"));
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        harness.writeCsv(Paths.get(out + ".csv"));
+        harness.writeJson(Paths.get(out + ".json"), rounds, elapsedMillis);
+        System.out.println("played " + rounds + " rounds in " + elapsedMillis + " ms, results in " + out + ".csv/.json");
+    }
+}
@@ -0,0 +1,188 @@
+package bguspl.set.bench;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Control;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Contention on the Table slot semaphores and on the claim queue.
+ * Every benchmark thread is a player. With probability overlap a player presses a random slot of the table,
+ * otherwise it presses its own "home" slot, so overlap = 0 means the players barely compete on the same slots.
+ * <p>
+ * tokens - players place and remove tokens but never complete a set (slot semaphores only).
+ * claims - players complete sets and wait for the verdict of a single dealer thread (slot semaphores, queueSem and
+ * the claim queue).
+ * <p>
+ * The thread counts are set with -t (tokens) and -tg (claims, e.g. "-tg 32,1"); main runs 4, 32 and 256 players.
+ * A claiming player waits for its verdict however long it takes, so the claim latency tail is measured in full.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableBenchmark {
+
+    /**
+     * How often a player waiting for the verdict checks whether the iteration is over (the dealer thread may stop
+     * before it judges the claim).
+     */
+    private static final long STOP_CHECK_MILLIS = 1;
+
+    @State(Scope.Benchmark)
+    public static class TableState {
+
+        @Param({"0.0", "0.5", "1.0"})
+        public double overlap;
+
+        Env env;
+        Table table;
+        final AtomicInteger nextPlayerId = new AtomicInteger();
+        final Queue<Player> players = new ConcurrentLinkedQueue<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Logger logger = BenchSupport.quietLogger();
+            Config config = BenchSupport.config(logger, new Properties());
+            env = new Env(logger, config, new NoopUserInterface(), new UtilImpl(config));
+            table = new Table(env);
+            for (int slot = 0; slot < config.tableSize; ++slot)
+                table.placeCard(slot, slot);
+        }
+
+        /**
+         * Discards the claims left when the iteration stopped, and their verdicts, so that a late verdict does not end
+         * a claim of the next iteration at once.
+         */
+        @TearDown(Level.Iteration)
+        public void discardClaims() {
+            table.queueOfPlayers.clear();
+            for (Player player : players)
+                player.getWaitingZone().clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PlayerState {
+
+        BenchPlayer player;
+        Random random;
+        int homeSlot;
+
+        @Setup(Level.Trial)
+        public void setUp(TableState state) {
+            int id = state.nextPlayerId.getAndIncrement();
+            player = new BenchPlayer(state.env, state.table, id);
+            state.players.add(player);
+            random = new Random(id);
+            homeSlot = id % state.env.config.tableSize;
+        }
+
+        int nextSlot(TableState state) {
+            if (random.nextDouble() < state.overlap)
+                return random.nextInt(state.env.config.tableSize);
+            return homeSlot;
+        }
+    }
+
+    /**
+     * A player that waits for the verdict until it comes or the iteration is over (so the benchmark threads can always
+     * finish an iteration).
+     */
+    static class BenchPlayer extends Player {
+
+        /**
+         * The control of the current benchmark (set by the benchmark thread of the player before it presses).
+         */
+        Control control;
+
+        BenchPlayer(Env env, Table table, int id) {
+            super(env, null, table, id, false);
+        }
+
+        @Override
+        public void enterWaitingZone() {
+            try {
+                while (getWaitingZone().poll(STOP_CHECK_MILLIS, TimeUnit.MILLISECONDS) == null)
+                    if (control == null || control.stopMeasurement) return;
+            } catch (InterruptedException ignored) {}
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean tokens(TableState state, PlayerState playerState) {
+        Player player = playerState.player;
+        int slot = playerState.nextSlot(state);
+        if (hasToken(player, slot))
+            return state.table.removeToken(player, slot);
+        if (player.getNumTokens() < state.env.config.featureSize - 1) {
+            state.table.placeToken(player, slot);
+            return true;
+        }
+        return state.table.removeToken(player, player.getTokens()[0]);
+    }
+
+    @Benchmark
+    @Group("claims")
+    @GroupThreads(4)
+    public boolean press(TableState state, PlayerState playerState, Control control) {
+        // the same logic as Player.executeAction
+        BenchPlayer player = playerState.player;
+        player.control = control;
+        int slot = playerState.nextSlot(state);
+        if (hasToken(player, slot))
+            return state.table.removeToken(player, slot);
+        if (player.getNumTokens() < state.env.config.featureSize) {
+            state.table.placeToken(player, slot);
+            return true;
+        }
+        return state.table.removeToken(player, player.getTokens()[0]);
+    }
+
+    @Benchmark
+    @Group("claims")
+    @GroupThreads(1)
+    public Player verdict(TableState state) throws InterruptedException {
+        // a penalty without a freeze: the player keeps its tokens and resumes
+        Player player = state.table.queueOfPlayers.poll(1, TimeUnit.MILLISECONDS);
+        if (player != null)
+            player.release();
+        return player;
+    }
+
+    private static boolean hasToken(Player player, int slot) {
+        int[] tokens = player.getTokens();
+        for (int i = 0; i < player.getNumTokens(); ++i)
+            if (tokens[i] == slot) return true;
+        return false;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int players : new int[]{4, 32, 256}) {
+            new Runner(new OptionsBuilder()
+                    .include(TableBenchmark.class.getSimpleName() + ".tokens")
+                    .threads(players)
+                    .build()).run();
+            new Runner(new OptionsBuilder()
+                    .include(TableBenchmark.class.getSimpleName() + ".claims")
+                    .threadGroups(players, 1)
+                    .build()).run();
+        }
+    }
+}
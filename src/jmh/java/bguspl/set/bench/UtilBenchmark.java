@@ -0,0 +1,137 @@
+package bguspl.set.bench;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Throughput of the set algorithms in UtilImpl.
+ * The table (and the candidate set passed to testSet) either contains a legal set or not, according to the hit param.
+ * Run with the GC profiler (e.g. "-prof gc", or via main) to see the allocation rate of each operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UtilBenchmark {
+
+    private static final long SEED = 42;
+    private static final int MAX_DEAL_ATTEMPTS = 10_000;
+
+    @Param({"3", "4"})
+    public int featureSize;
+
+    @Param({"4"})
+    public int featureCount;
+
+    @Param({"12", "15"})
+    public int tableSize;
+
+    @Param({"present", "absent"})
+    public String hit;
+
+    private Util util;
+    private List<Integer> deck;
+    private List<Integer> table;
+    private int[] tableCards;
+    private int[] candidate;
+    private int nextCard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        Config config = BenchSupport.config(BenchSupport.quietLogger(), properties);
+        util = new UtilImpl(config);
+
+        Random random = new Random(SEED);
+        deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, random);
+
+        boolean present = "present".equals(hit);
+        table = present ? dealWithSet(config, random) : dealWithoutSet(config, random);
+        tableCards = table.stream().mapToInt(Integer::intValue).toArray();
+
+        if (present) {
+            candidate = util.findSets(table, 1).get(0);
+        } else {
+            candidate = new int[featureSize];
+            for (int i = 0; i < featureSize; ++i)
+                candidate[i] = tableCards[i];
+        }
+    }
+
+    private List<Integer> dealWithSet(Config config, Random random) {
+        List<Integer> cards = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        for (int attempt = 0; attempt < MAX_DEAL_ATTEMPTS; ++attempt) {
+            Collections.shuffle(cards, random);
+            List<Integer> dealt = new ArrayList<>(cards.subList(0, tableSize));
+            if (!util.findSets(dealt, 1).isEmpty()) return dealt;
+        }
+        throw new IllegalStateException("could not deal " + tableSize + " cards containing a set");
+    }
+
+    private List<Integer> dealWithoutSet(Config config, Random random) {
+        List<Integer> cards = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        for (int attempt = 0; attempt < MAX_DEAL_ATTEMPTS; ++attempt) {
+            Collections.shuffle(cards, random);
+            List<Integer> dealt = new ArrayList<>();
+            for (int i = 0; i < cards.size() && dealt.size() < tableSize; ++i) {
+                dealt.add(cards.get(i));
+                if (!util.findSets(dealt, 1).isEmpty()) dealt.remove(dealt.size() - 1);
+            }
+            if (dealt.size() == tableSize) return dealt;
+        }
+        throw new IllegalStateException("could not deal " + tableSize + " cards without a set");
+    }
+
+    @Benchmark
+    public int[] cardToFeatures() {
+        nextCard = nextCard + 1 == deck.size() ? 0 : nextCard + 1;
+        return util.cardToFeatures(deck.get(nextCard));
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(tableCards);
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(candidate);
+    }
+
+    @Benchmark
+    public List<int[]> findSetsOnTable() {
+        return util.findSets(table, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<int[]> findFirstSetInDeck() {
+        return util.findSets(deck, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UtilBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
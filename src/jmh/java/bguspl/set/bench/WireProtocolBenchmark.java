@@ -0,0 +1,130 @@
+package bguspl.set.bench;
+
+import bguspl.set.BoardState;
+import bguspl.set.BufferPool;
+import bguspl.set.WireProtocol;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the remote client protocol: encoding the frame of a tick into a pooled buffer, decoding it on a client,
+ * and the snapshot sent to a joining client.
+ * A tick either replaces a set (3 cards removed and placed, their tokens cleared, a score and a freeze) or is a storm
+ * of presses (presses token changes on random slots), according to the tick param. The bytes counter of encodeFrame
+ * is the rate of encoded bytes (divided by the score, the size of a frame).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WireProtocolBenchmark {
+
+    private static final int ROWS = 3, COLUMNS = 4;
+    private static final long SEED = 42;
+
+    @Param({"6", "64"})
+    public int players;
+
+    @Param({"refill", "storm"})
+    public String tick;
+
+    @Param({"100"})
+    public int presses;
+
+    private BoardState server;
+    private BoardState client;
+    private BufferPool pool;
+    private ByteBuffer encodedFrame;
+    private Random random;
+    private int nextCard;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new BoardState(ROWS, COLUMNS, players);
+        client = new BoardState(ROWS, COLUMNS, players);
+        pool = new BufferPool(WireProtocol.MAX_MESSAGE_BYTES, 16);
+        random = new Random(SEED);
+        for (int slot = 0; slot < ROWS * COLUMNS; slot++) server.placeCard(nextCard++, slot);
+        for (int player = 0; player < players; player++) server.placeToken(player, random.nextInt(ROWS * COLUMNS));
+        server.startCountdown(60000, 5000);
+
+        encodedFrame = ByteBuffer.allocateDirect(WireProtocol.MAX_MESSAGE_BYTES);
+        change();
+        server.writeFrame(encodedFrame);
+        encodedFrame.flip();
+    }
+
+    /**
+     * Makes the changes of a tick.
+     */
+    private void change() {
+        int slots = ROWS * COLUMNS;
+        if (tick.equals("refill")) {
+            int player = random.nextInt(players);
+            int first = random.nextInt(slots);
+            for (int i = 0; i < 3; i++) {
+                int slot = (first + i * 5) % slots;
+                server.removeTokens(slot);
+                server.removeCard(slot);
+            }
+            for (int i = 0; i < 3; i++) server.placeCard(nextCard++ % 81, (first + i * 5) % slots);
+            server.setScore(player, nextCard);
+            server.setFreeze(player, 1000);
+        } else
+            for (int i = 0; i < presses; i++) {
+                int player = random.nextInt(players), slot = random.nextInt(slots);
+                if (random.nextBoolean()) server.placeToken(player, slot);
+                else server.removeToken(player, slot);
+            }
+    }
+
+    @Benchmark
+    public int encodeFrame(Bytes bytes) {
+        change();
+        BufferPool.Buffer frame = pool.acquire();
+        server.writeFrame(frame.buffer);
+        int size = frame.buffer.position();
+        bytes.bytes += size;
+        frame.release();
+        return size;
+    }
+
+    @Benchmark
+    public long decodeFrame() throws IOException {
+        ByteBuffer in = encodedFrame.duplicate();
+        client.read(WireProtocol.next(in));
+        return client.tick();
+    }
+
+    @Benchmark
+    public int encodeSnapshot() {
+        BufferPool.Buffer snapshot = pool.acquire();
+        server.writeSnapshot(snapshot.buffer);
+        int size = snapshot.buffer.position();
+        snapshot.release();
+        return size;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WireProtocolBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,167 @@
+package bguspl.set;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that hands the records to another handler on a dedicated writer thread, so the threads that log never
+ * wait for formatting or for the disk.
+ * The records are passed through a preallocated lock-free ring buffer. When the buffer is full, records are dropped
+ * (and counted) rather than blocking the logging thread.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The handler that formats and writes the records.
+     */
+    private final Handler target;
+
+    /**
+     * The ring buffer: slot i holds the record of position p (with p % capacity == i) when sequences[i] == p + 1, and
+     * is free for position p when sequences[i] == p.
+     */
+    private final AtomicReferenceArray<LogRecord> records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    /**
+     * The next position to publish to (claimed by the logging threads).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next position to write (advanced by the writer thread only).
+     */
+    private volatile long head;
+
+    /**
+     * The number of records handed to the target handler so far (advanced by the writer thread only, after the target
+     * is done with the record).
+     */
+    private volatile long written;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+
+    /**
+     * @param target   - the handler to write the records with.
+     * @param capacity - the number of records the buffer holds (rounded up to a power of 2).
+     */
+    public AsyncLogHandler(Handler target, int capacity) {
+        this.target = target;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        records = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+        mask = size - 1;
+
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long free = sequences.get(index) - position;
+            if (free == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+                position = tail.get();
+            } else if (free < 0) { // the buffer is full
+                dropped.incrementAndGet();
+                return;
+            } else position = tail.get();
+        }
+        records.set(index, record);
+        sequences.set(index, position + 1);
+
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    /**
+     * @return - the next record in the buffer, or null if the buffer is empty. Called by the writer thread only.
+     */
+    private LogRecord poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) return null;
+        LogRecord record = records.getAndSet(index, null);
+        sequences.set(index, position + records.length());
+        head = position + 1;
+        return record;
+    }
+
+    private void write() {
+        while (true) {
+            LogRecord record = poll();
+            if (record != null) {
+                target.publish(record);
+                ++written;
+                continue;
+            }
+
+            long lost = dropped.getAndSet(0);
+            if (lost > 0)
+                target.publish(new LogRecord(Level.WARNING, "log buffer full, dropped " + lost + " records"));
+            if (closed) return;
+
+            writerParked = true;
+            if (head == tail.get()) LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+            writerParked = false;
+        }
+    }
+
+    /**
+     * Waits until all the records published so far are written, then flushes the target handler.
+     */
+    @Override
+    public void flush() {
+        long published = tail.get();
+        while (written < published && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        target.flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    /**
+     * The records are formatted by the target handler (on the writer thread).
+     */
+    @Override
+    public void setFormatter(Formatter formatter) {
+        target.setFormatter(formatter);
+    }
+
+    @Override
+    public Formatter getFormatter() {
+        return target.getFormatter();
+    }
+}
@@ -0,0 +1,138 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * The implementation of the Journal interface as a compact binary file.
+ * The file starts with a header holding the game dimensions, followed by fixed-size records which are buffered in
+ * memory and appended to the file whenever the buffer fills up.
+ */
+public class BinaryJournal implements Journal {
+
+    /**
+     * The file header: magic, version, feature size, feature count, rows, columns, players.
+     */
+    private static final int MAGIC = 0x5345544A; // "SETJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 7 * Integer.BYTES;
+
+    /**
+     * A record: event (1), player (2), slot (2), card (4), time (8).
+     */
+    public static final int RECORD_SIZE = Byte.BYTES + 2 * Short.BYTES + Integer.BYTES + Long.BYTES;
+
+    private static final int BUFFER_RECORDS = 4096;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE);
+
+    public BinaryJournal(Path path, Config config) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(config.featureSize).putInt(config.featureCount)
+                .putInt(config.rows).putInt(config.columns).putInt(config.players).flip();
+        while (header.hasRemaining()) channel.write(header);
+    }
+
+    @Override
+    public synchronized void record(Event event, int player, int slot, int card, long time) {
+        if (!buffer.hasRemaining()) flush();
+        buffer.put((byte) event.ordinal()).putShort((short) player).putShort((short) slot).putInt(card).putLong(time);
+    }
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!channel.isOpen()) return;
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The dimensions of the game a journal was recorded from.
+     */
+    public static class Header {
+        public final int featureSize;
+        public final int featureCount;
+        public final int rows;
+        public final int columns;
+        public final int players;
+
+        private Header(ByteBuffer buffer) {
+            if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("not a game journal");
+            int version = buffer.getInt();
+            if (version != VERSION) throw new IllegalArgumentException("unsupported journal version " + version);
+            featureSize = buffer.getInt();
+            featureCount = buffer.getInt();
+            rows = buffer.getInt();
+            columns = buffer.getInt();
+            players = buffer.getInt();
+        }
+    }
+
+    /**
+     * A single journal record.
+     */
+    public static class Record {
+        public final Event event;
+        public final int player;
+        public final int slot;
+        public final int card;
+        public final long time;
+
+        private Record(ByteBuffer buffer) {
+            event = Event.values()[buffer.get()];
+            player = buffer.getShort();
+            slot = buffer.getShort();
+            card = buffer.getInt();
+            time = buffer.getLong();
+        }
+    }
+
+    /**
+     * Reads a journal file.
+     *
+     * @param path     - the journal file.
+     * @param onHeader - called with the header of the journal, before any record.
+     * @param consumer - called for each record, in the order they were recorded.
+     * @throws IOException - if the file cannot be read.
+     */
+    public static void read(Path path, Consumer<Header> onHeader, Consumer<Record> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE);
+            buffer.limit(HEADER_SIZE);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) ;
+            buffer.flip();
+            onHeader.accept(new Header(buffer));
+            buffer.clear();
+            for (int read = 0; read >= 0; ) {
+                read = channel.read(buffer);
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE)
+                    consumer.accept(new Record(buffer));
+                buffer.compact();
+            }
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The state of the game as the user interface shows it (cards, tokens, scores, freezes, timer and winners), kept by the
+ * remote player server and by its clients.
+ * The server changes it through the user interface calls, and remembers what changed since the last frame: writeFrame
+ * writes the current value of every slot and player that changed (so several changes to a slot in the same tick take
+ * the space of one), and writeSnapshot writes everything, for a client that joins. A client reads both with read.
+ * Since a frame carries values rather than changes, applying a frame again (or after a later snapshot) is harmless.
+ * <p>
+ * The body of a SNAPSHOT is rows, columns and players, followed by the body of a FRAME:
+ * the tick, the changed slots (count, then slot, card (-1 for none), token count and the token players of each),
+ * the changed players (count, then player, score and freeze millies of each), the timer (mode byte, then millies and
+ * argument unless the mode is TIMER_NONE) and the winners (a byte: 0 for unchanged, else 1 followed by count and
+ * players).
+ */
+public class BoardState implements UserInterface {
+
+    public static final int NO_CARD = -1;
+
+    /**
+     * The timer modes (TIMER_NONE also means that the timer did not change in a frame).
+     */
+    public static final byte TIMER_NONE = 0;
+    public static final byte TIMER_COUNTDOWN = 1;       // millies, warn (0 or 1)
+    public static final byte TIMER_RUNNING = 2;         // millies remaining, warn millies
+    public static final byte TIMER_ELAPSED = 3;         // millies, 0
+
+    private int rows;
+    private int columns;
+    private int[] cards;
+    private BitSet[] tokens;
+    private int[] scores;
+    private long[] freezes;
+    private byte timerMode = TIMER_NONE;
+    private long timerMillies;
+    private long timerArgument;
+    private long timerStartMillis;
+    private int[] winners = null;
+    private long tick = 0;
+
+    /**
+     * What changed since the last frame.
+     */
+    private final BitSet changedSlots = new BitSet();
+    private final BitSet changedPlayers = new BitSet();
+    private boolean timerChanged = false;
+    private boolean winnersChanged = false;
+
+    /**
+     * The game clock, which a running countdown is measured on.
+     */
+    private final Clock clock;
+
+    /**
+     * @param rows    - the rows of the table.
+     * @param columns - the columns of the table.
+     * @param players - the number of players.
+     * @param clock   - the game clock.
+     */
+    public BoardState(int rows, int columns, int players, Clock clock) {
+        this.clock = clock;
+        resize(rows, columns, players);
+    }
+
+    public BoardState(int rows, int columns, int players) {
+        this(rows, columns, players, new SystemClock());
+    }
+
+    private void resize(int rows, int columns, int players) {
+        this.rows = rows;
+        this.columns = columns;
+        cards = new int[rows * columns];
+        Arrays.fill(cards, NO_CARD);
+        tokens = new BitSet[rows * columns];
+        Arrays.setAll(tokens, slot -> new BitSet());
+        scores = new int[players];
+        freezes = new long[players];
+    }
+
+    public synchronized int rows() {
+        return rows;
+    }
+
+    public synchronized int columns() {
+        return columns;
+    }
+
+    public synchronized int players() {
+        return scores.length;
+    }
+
+    public synchronized long tick() {
+        return tick;
+    }
+
+    /**
+     * @return - the card in the slot, or NO_CARD.
+     */
+    public synchronized int card(int slot) {
+        return cards[slot];
+    }
+
+    /**
+     * @return - the players with a token on the slot, in ascending order.
+     */
+    public synchronized int[] tokens(int slot) {
+        return tokens[slot].stream().toArray();
+    }
+
+    public synchronized int score(int player) {
+        return scores[player];
+    }
+
+    public synchronized long freeze(int player) {
+        return freezes[player];
+    }
+
+    public synchronized byte timerMode() {
+        return timerMode;
+    }
+
+    /**
+     * @return - the millies of the timer (for TIMER_RUNNING, the millies remaining when the countdown was received).
+     */
+    public synchronized long timerMillies() {
+        return timerMillies;
+    }
+
+    public synchronized long timerArgument() {
+        return timerArgument;
+    }
+
+    /**
+     * @return - the winners, or null if the game did not end.
+     */
+    public synchronized int[] winners() {
+        return winners == null ? null : winners.clone();
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        cards[slot] = card;
+        changedSlots.set(slot);
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        cards[slot] = NO_CARD;
+        changedSlots.set(slot);
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        tokens[slot].set(player);
+        changedSlots.set(slot);
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        for (int slot = 0; slot < tokens.length; slot++)
+            removeTokens(slot);
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        if (tokens[slot].isEmpty()) return;
+        tokens[slot].clear();
+        changedSlots.set(slot);
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        tokens[slot].clear(player);
+        changedSlots.set(slot);
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        setTimer(TIMER_COUNTDOWN, millies, warn ? 1 : 0);
+    }
+
+    @Override
+    public synchronized void startCountdown(long millies, long warnMillies) {
+        setTimer(TIMER_RUNNING, millies, warnMillies);
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) {
+        setTimer(TIMER_ELAPSED, millies, 0);
+    }
+
+    private void setTimer(byte mode, long millies, long argument) {
+        timerMode = mode;
+        timerMillies = millies;
+        timerArgument = argument;
+        timerStartMillis = clock.currentTimeMillis();
+        timerChanged = true;
+    }
+
+    @Override
+    public synchronized void setFreeze(int player, long millies) {
+        freezes[player] = millies;
+        changedPlayers.set(player);
+    }
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        scores[player] = score;
+        changedPlayers.set(player);
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        winners = players.clone();
+        winnersChanged = true;
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    /**
+     * @return - true iff something changed since the last frame.
+     */
+    public synchronized boolean changed() {
+        return !changedSlots.isEmpty() || !changedPlayers.isEmpty() || timerChanged || winnersChanged;
+    }
+
+    /**
+     * Writes a FRAME message with what changed since the last frame (if anything) and starts the next tick.
+     *
+     * @param out - the buffer to write to.
+     * @return - true iff a frame was written.
+     */
+    public synchronized boolean writeFrame(ByteBuffer out) {
+        if (!changed()) return false;
+        ++tick;
+        int start = WireProtocol.begin(out, WireProtocol.FRAME);
+        writeBody(out, changedSlots, changedPlayers, timerChanged, winnersChanged);
+        WireProtocol.end(out, start);
+        changedSlots.clear();
+        changedPlayers.clear();
+        timerChanged = false;
+        winnersChanged = false;
+        return true;
+    }
+
+    /**
+     * Writes a SNAPSHOT message with the whole state.
+     *
+     * @param out - the buffer to write to.
+     */
+    public synchronized void writeSnapshot(ByteBuffer out) {
+        int start = WireProtocol.begin(out, WireProtocol.SNAPSHOT);
+        WireProtocol.putVarint(out, rows);
+        WireProtocol.putVarint(out, columns);
+        WireProtocol.putVarint(out, scores.length);
+        BitSet allSlots = new BitSet(cards.length);
+        allSlots.set(0, cards.length);
+        BitSet allPlayers = new BitSet(scores.length);
+        allPlayers.set(0, scores.length);
+        writeBody(out, allSlots, allPlayers, timerMode != TIMER_NONE, winners != null);
+        WireProtocol.end(out, start);
+    }
+
+    private void writeBody(ByteBuffer out, BitSet slots, BitSet players, boolean timer, boolean writeWinners) {
+        WireProtocol.putVarlong(out, tick);
+
+        WireProtocol.putVarint(out, slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            WireProtocol.putVarint(out, slot);
+            WireProtocol.putSignedVarint(out, cards[slot]);
+            BitSet slotTokens = tokens[slot];
+            WireProtocol.putVarint(out, slotTokens.cardinality());
+            for (int player = slotTokens.nextSetBit(0); player >= 0; player = slotTokens.nextSetBit(player + 1))
+                WireProtocol.putVarint(out, player);
+        }
+
+        WireProtocol.putVarint(out, players.cardinality());
+        for (int player = players.nextSetBit(0); player >= 0; player = players.nextSetBit(player + 1)) {
+            WireProtocol.putVarint(out, player);
+            WireProtocol.putSignedVarint(out, scores[player]);
+            WireProtocol.putSignedVarlong(out, freezes[player]);
+        }
+
+        if (timer) {
+            long millies = timerMillies;
+            if (timerMode == TIMER_RUNNING) // what is left of the countdown
+                millies = Math.max(0, millies - (clock.currentTimeMillis() - timerStartMillis));
+            out.put(timerMode);
+            WireProtocol.putSignedVarlong(out, millies);
+            WireProtocol.putSignedVarlong(out, timerArgument);
+        } else
+            out.put(TIMER_NONE);
+
+        if (writeWinners) {
+            out.put((byte) 1);
+            WireProtocol.putVarint(out, winners.length);
+            for (int player : winners) WireProtocol.putVarint(out, player);
+        } else
+            out.put((byte) 0);
+    }
+
+    /**
+     * Applies a SNAPSHOT or FRAME message.
+     *
+     * @param message - the message (from WireProtocol.next).
+     * @throws IOException - if the message is not a valid SNAPSHOT or FRAME.
+     */
+    public synchronized void read(ByteBuffer message) throws IOException {
+        try {
+            byte type = message.get();
+            if (type == WireProtocol.SNAPSHOT) {
+                int rows = WireProtocol.getVarint(message);
+                int columns = WireProtocol.getVarint(message);
+                int players = WireProtocol.getVarint(message);
+                if (rows < 0 || columns < 0 || players < 0 || (long) rows * columns > 0xFFFF || players > 0xFFFF)
+                    throw new IOException("invalid snapshot dimensions");
+                resize(rows, columns, players);
+                timerMode = TIMER_NONE;
+                winners = null;
+            } else if (type != WireProtocol.FRAME)
+                throw new IOException("unexpected message type " + type);
+            readBody(message);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated message");
+        }
+    }
+
+    private void readBody(ByteBuffer in) throws IOException {
+        tick = WireProtocol.getVarlong(in);
+
+        for (int count = WireProtocol.getVarint(in); count > 0; count--) {
+            int slot = index(WireProtocol.getVarint(in), cards.length);
+            cards[slot] = WireProtocol.getSignedVarint(in);
+            BitSet slotTokens = tokens[slot];
+            slotTokens.clear();
+            for (int players = WireProtocol.getVarint(in); players > 0; players--)
+                slotTokens.set(index(WireProtocol.getVarint(in), scores.length));
+        }
+
+        for (int count = WireProtocol.getVarint(in); count > 0; count--) {
+            int player = index(WireProtocol.getVarint(in), scores.length);
+            scores[player] = WireProtocol.getSignedVarint(in);
+            freezes[player] = WireProtocol.getSignedVarlong(in);
+        }
+
+        byte mode = in.get();
+        if (mode != TIMER_NONE) {
+            if (mode > TIMER_ELAPSED) throw new IOException("unknown timer mode " + mode);
+            setTimer(mode, WireProtocol.getSignedVarlong(in), WireProtocol.getSignedVarlong(in));
+            timerChanged = false;
+        }
+
+        if (in.get() != 0) {
+            int[] players = new int[index(WireProtocol.getVarint(in), scores.length + 1)];
+            for (int i = 0; i < players.length; i++)
+                players[i] = index(WireProtocol.getVarint(in), scores.length);
+            winners = players;
+        }
+    }
+
+    private static int index(int index, int size) throws IOException {
+        if (index < 0 || index >= size) throw new IOException("index " + index + " out of range " + size);
+        return index;
+    }
+}
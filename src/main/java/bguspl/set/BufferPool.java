@@ -0,0 +1,80 @@
+package bguspl.set;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct buffers of the same size, which are reference counted so one buffer can be written to many sockets
+ * (each through its own duplicate) and returns to the pool once the last socket is done with it.
+ * Not thread-safe: the buffers are acquired and released by a single thread (e.g. the I/O thread of a server).
+ */
+public class BufferPool {
+
+    /**
+     * A pooled buffer.
+     */
+    public final class Buffer {
+
+        public final ByteBuffer buffer;
+        private int references;
+
+        private Buffer() {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        /**
+         * Adds a reference to the buffer.
+         *
+         * @return - the buffer.
+         */
+        public Buffer retain() {
+            if (references <= 0) throw new IllegalStateException("buffer was released");
+            ++references;
+            return this;
+        }
+
+        /**
+         * Removes a reference to the buffer, and returns it to the pool when there are no references left.
+         */
+        public void release() {
+            if (references <= 0) throw new IllegalStateException("buffer was released");
+            if (--references == 0 && free.size() < maxFree)
+                free.push(this);
+        }
+    }
+
+    private final int capacity;
+    private final int maxFree;
+    private final ArrayDeque<Buffer> free = new ArrayDeque<>();
+    private int allocated = 0;
+
+    /**
+     * @param capacity - the size of the buffers.
+     * @param maxFree  - the maximal number of buffers kept in the pool when they are not used.
+     */
+    public BufferPool(int capacity, int maxFree) {
+        this.capacity = capacity;
+        this.maxFree = maxFree;
+    }
+
+    /**
+     * @return - a cleared buffer with a single reference.
+     */
+    public Buffer acquire() {
+        Buffer buffer = free.poll();
+        if (buffer == null) {
+            buffer = new Buffer();
+            ++allocated;
+        }
+        buffer.buffer.clear();
+        buffer.references = 1;
+        return buffer;
+    }
+
+    /**
+     * @return - the number of buffers allocated so far.
+     */
+    public int allocated() {
+        return allocated;
+    }
+}
@@ -0,0 +1,144 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * All the card images packed into a single image (the atlas), with an index of where each image is.
+ * The atlas is generated at build time by the main method, so the game reads one resource instead of one per card.
+ * The index is a text file with a line per image: name x y width height.
+ */
+public class CardAtlas {
+
+    /**
+     * The resource names of the atlas image and index.
+     */
+    static final String IMAGE_RESOURCE = "cards/atlas.png";
+    static final String INDEX_RESOURCE = "cards/atlas.idx";
+
+    private final BufferedImage atlas;
+    private final Map<String, Rectangle> index;
+
+    private CardAtlas(BufferedImage atlas, Map<String, Rectangle> index) {
+        this.atlas = atlas;
+        this.index = index;
+    }
+
+    /**
+     * Reads the atlas from the class path.
+     *
+     * @return - the atlas, or null if there is no atlas on the class path (e.g. when the build step was skipped).
+     * @throws IOException - if the atlas exists but cannot be read.
+     */
+    static CardAtlas load() throws IOException {
+        ClassLoader loader = CardAtlas.class.getClassLoader();
+        try (InputStream indexStream = loader.getResourceAsStream(INDEX_RESOURCE);
+             InputStream imageStream = loader.getResourceAsStream(IMAGE_RESOURCE)) {
+            if (indexStream == null || imageStream == null) return null;
+
+            Map<String, Rectangle> index = new HashMap<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(indexStream, StandardCharsets.UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length != 5) continue;
+                index.put(fields[0], new Rectangle(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+            }
+            BufferedImage atlas = ImageIO.read(imageStream);
+            if (atlas == null) throw new IOException("cannot decode " + IMAGE_RESOURCE);
+            return new CardAtlas(atlas, index);
+        }
+    }
+
+    /**
+     * @param name - the file name of the image, e.g. "0120.png".
+     * @return - the image (sharing the pixels of the atlas), or null if the atlas does not contain it.
+     */
+    BufferedImage image(String name) {
+        Rectangle bounds = index.get(name);
+        return bounds == null ? null : atlas.getSubimage(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * Packs the png images of a directory into an atlas, in a grid of cells as large as the largest image.
+     * Does nothing if the atlas is up to date (newer than the images and the directory), so most builds skip it.
+     *
+     * @param args - the directory of the card images and the directory to write the atlas to.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: CardAtlas <images directory> <output directory>");
+            System.exit(1);
+        }
+        Path source = Paths.get(args[0]);
+        Path target = Paths.get(args[1]);
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(source)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(".png"))
+                    .filter(file -> !file.getFileName().toString().equals("atlas.png"))
+                    .sorted().collect(Collectors.toList());
+        }
+        Path imageFile = target.resolve(Paths.get(IMAGE_RESOURCE).getFileName());
+        Path indexFile = target.resolve(Paths.get(INDEX_RESOURCE).getFileName());
+        if (upToDate(source, files, imageFile, indexFile)) return;
+
+        List<BufferedImage> images = new ArrayList<>(files.size());
+        int cellWidth = 1, cellHeight = 1;
+        for (Path file : files) {
+            BufferedImage image = ImageIO.read(file.toFile());
+            if (image == null) throw new IOException("cannot decode " + file);
+            images.add(image);
+            cellWidth = Math.max(cellWidth, image.getWidth());
+            cellHeight = Math.max(cellHeight, image.getHeight());
+        }
+
+        int columns = Math.max(1, (int) Math.ceil(Math.sqrt(images.size())));
+        int rows = Math.max(1, (images.size() + columns - 1) / columns);
+        BufferedImage atlas = new BufferedImage(columns * cellWidth, rows * cellHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        Files.createDirectories(target);
+        try (BufferedWriter index = Files.newBufferedWriter(indexFile)) {
+            for (int i = 0; i < images.size(); i++) {
+                BufferedImage image = images.get(i);
+                int x = (i % columns) * cellWidth;
+                int y = (i / columns) * cellHeight;
+                g.drawImage(image, x, y, null);
+                index.write(files.get(i).getFileName() + " " + x + " " + y + " " + image.getWidth() + " " + image.getHeight());
+                index.newLine();
+            }
+        } finally {
+            g.dispose();
+        }
+        ImageIO.write(atlas, "png", imageFile.toFile());
+    }
+
+    /**
+     * @return - true iff both atlas files exist and were written after the images (and the directory, which changes
+     * when an image is added or removed) were last modified.
+     */
+    private static boolean upToDate(Path source, List<Path> files, Path imageFile, Path indexFile) throws IOException {
+        if (!Files.exists(imageFile) || !Files.exists(indexFile)) return false;
+        long written = Math.min(Files.getLastModifiedTime(imageFile).toMillis(), Files.getLastModifiedTime(indexFile).toMillis());
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        for (Path file : files)
+            modified = Math.max(modified, Files.getLastModifiedTime(file).toMillis());
+        return written >= modified;
+    }
+}
@@ -0,0 +1,161 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of card images, scaled to the cell size and converted to the screen format, so painting them is a plain copy.
+ * Images are loaded on demand, in parallel, on a background pool. The cache holds at most a fixed number of images,
+ * evicting the least recently used ones.
+ */
+class CardImageCache {
+
+    private final Logger logger;
+
+    /**
+     * Loads the original (unscaled) image of a card.
+     */
+    private final IntFunction<BufferedImage> source;
+
+    /**
+     * Called with the card id when the image of the card is loaded.
+     */
+    private final IntConsumer onLoaded;
+
+    /**
+     * The size of the cached images.
+     */
+    private final int width;
+    private final int height;
+
+    /**
+     * The cached images, in access order (guarded by itself).
+     */
+    private final Map<Integer, BufferedImage> images;
+
+    /**
+     * The cards whose images are being loaded.
+     */
+    private final Set<Integer> loading = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService loaders;
+
+    /**
+     * @param logger   - the logger to report load failures to.
+     * @param source   - loads the original image of a card.
+     * @param width    - the width of the cached images.
+     * @param height   - the height of the cached images.
+     * @param capacity - the maximal number of cached images.
+     * @param onLoaded - called (on a loader thread) with the card id when the image of the card is loaded.
+     */
+    CardImageCache(Logger logger, IntFunction<BufferedImage> source, int width, int height, int capacity, IntConsumer onLoaded) {
+        this.logger = logger;
+        this.source = source;
+        this.width = width;
+        this.height = height;
+        this.onLoaded = onLoaded;
+        images = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+                return size() > capacity;
+            }
+        };
+        loaders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "card-images");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the image of the card, or null if it is not loaded yet (in that case, it starts loading).
+     */
+    BufferedImage get(int card) {
+        synchronized (images) {
+            BufferedImage image = images.get(card);
+            if (image != null) return image;
+        }
+        prefetch(card);
+        return null;
+    }
+
+    /**
+     * Starts loading the image of a card, unless it is already cached or being loaded.
+     *
+     * @param card - the card id.
+     */
+    void prefetch(int card) {
+        synchronized (images) {
+            if (images.containsKey(card)) return;
+        }
+        if (!loading.add(card)) return;
+        try {
+            loaders.execute(() -> load(card));
+        } catch (RejectedExecutionException ignored) {
+            loading.remove(card); // the cache was shut down
+        }
+    }
+
+    private void load(int card) {
+        BufferedImage image;
+        try {
+            image = scale(source.apply(card), width, height);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "cannot load the image of card " + card, e);
+            image = createImage(width, height); // a blank card, so we do not try again on every paint
+        }
+        synchronized (images) {
+            images.put(card, image);
+        }
+        loading.remove(card);
+        onLoaded.accept(card);
+    }
+
+    /**
+     * Stops the loader threads.
+     */
+    void shutdown() {
+        loaders.shutdownNow();
+    }
+
+    /**
+     * @param image  - an image.
+     * @param width  - the width of the result.
+     * @param height - the height of the result.
+     * @return - a copy of the image, scaled to the given size, in the format of the screen.
+     */
+    static BufferedImage scale(Image image, int width, int height) {
+        BufferedImage scaled = createImage(width, height);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * @return - an empty image compatible with the screen (so Java2D can keep an accelerated copy of it).
+     */
+    static BufferedImage createImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless())
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+}
@@ -0,0 +1,138 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws card images from the features of the cards, for decks of any size (no image files needed).
+ * The first features are drawn as the number, color, shape and shading of the symbols on the card. Every further
+ * feature is drawn as a bar of featureSize segments at the bottom of the card, with the segment of its value marked.
+ */
+public class CardRenderer {
+
+    private static final int NUMBER = 0;
+    private static final int COLOR = 1;
+    private static final int SHAPE = 2;
+    private static final int SHADING = 3;
+
+    private final Config config;
+    private final Util util;
+    private final int width;
+    private final int height;
+
+    /**
+     * The colors of the values of the color feature.
+     */
+    private final Color[] colors;
+
+    /**
+     * @param config - the game configuration.
+     * @param util   - converts cards to features.
+     * @param width  - the width of the card images.
+     * @param height - the height of the card images.
+     */
+    public CardRenderer(Config config, Util util, int width, int height) {
+        this.config = config;
+        this.util = util;
+        this.width = width;
+        this.height = height;
+        colors = new Color[config.featureSize];
+        for (int i = 0; i < colors.length; i++)
+            colors[i] = Color.getHSBColor((float) i / colors.length, 0.85f, 0.8f);
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - a new image of the card.
+     */
+    public BufferedImage render(int card) {
+        int[] features = util.cardToFeatures(card);
+        BufferedImage image = CardImageCache.createImage(width, height);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+
+            float margin = Math.min(width, height) * 0.04f;
+            g.setColor(Color.WHITE);
+            g.fill(new RoundRectangle2D.Float(margin, margin, width - 2 * margin, height - 2 * margin, 4 * margin, 4 * margin));
+            g.setColor(Color.GRAY);
+            g.draw(new RoundRectangle2D.Float(margin, margin, width - 2 * margin, height - 2 * margin, 4 * margin, 4 * margin));
+
+            int extraFeatures = Math.max(0, features.length - SHADING - 1);
+            float barHeight = Math.min(height * 0.06f, height * 0.3f / Math.max(1, extraFeatures));
+            float symbolsBottom = height - 2 * margin - extraFeatures * barHeight * 1.5f;
+            drawSymbols(g, features, 3 * margin, 4 * margin, width - 6 * margin, symbolsBottom - 4 * margin);
+
+            for (int i = 0; i < extraFeatures; i++)
+                drawBar(g, features[SHADING + 1 + i], 3 * margin, symbolsBottom + i * barHeight * 1.5f,
+                        width - 6 * margin, barHeight);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static int feature(int[] features, int feature) {
+        return feature < features.length ? features[feature] : 0;
+    }
+
+    private void drawSymbols(Graphics2D g, int[] features, float x, float y, float areaWidth, float areaHeight) {
+        int count = feature(features, NUMBER) + 1;
+        Color color = features.length > COLOR ? colors[features[COLOR]] : Color.BLACK;
+        int shading = feature(features, SHADING);
+
+        float slot = areaWidth / count;
+        float size = Math.min(slot * 0.8f, areaHeight * 0.8f);
+        float top = y + (areaHeight - size) / 2;
+        g.setStroke(new BasicStroke(Math.max(1f, size / 20)));
+        for (int i = 0; i < count; i++) {
+            Shape symbol = shape(feature(features, SHAPE), x + i * slot + (slot - size) / 2, top, size);
+            if (shading > 0) {
+                // 0 is outlined, featureSize-1 is solid and the values in between are more and more opaque
+                int alpha = config.featureSize <= 1 ? 255 : 255 * shading / (config.featureSize - 1);
+                g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha));
+                g.fill(symbol);
+            }
+            g.setColor(color);
+            g.draw(symbol);
+        }
+    }
+
+    /**
+     * @return - shape 0 is an oval, and shape i > 0 is a regular polygon with i + 2 sides.
+     */
+    private static Shape shape(int shape, float x, float y, float size) {
+        if (shape == 0)
+            return new Ellipse2D.Float(x + size * 0.2f, y, size * 0.6f, size);
+        int sides = shape + 2;
+        Path2D.Float polygon = new Path2D.Float();
+        double centerX = x + size / 2.0, centerY = y + size / 2.0, radius = size / 2.0;
+        for (int i = 0; i < sides; i++) {
+            double angle = -Math.PI / 2 + 2 * Math.PI * i / sides;
+            double px = centerX + radius * Math.cos(angle), py = centerY + radius * Math.sin(angle);
+            if (i == 0) polygon.moveTo(px, py);
+            else polygon.lineTo(px, py);
+        }
+        polygon.closePath();
+        return polygon;
+    }
+
+    private void drawBar(Graphics2D g, int value, float x, float y, float barWidth, float barHeight) {
+        float segment = barWidth / config.featureSize;
+        g.setStroke(new BasicStroke(1f));
+        for (int i = 0; i < config.featureSize; i++) {
+            Shape cell = new Rectangle2D.Float(x + i * segment, y, segment, barHeight);
+            if (i == value) {
+                g.setColor(Color.DARK_GRAY);
+                g.fill(cell);
+            }
+            g.setColor(Color.LIGHT_GRAY);
+            g.draw(cell);
+        }
+    }
+}
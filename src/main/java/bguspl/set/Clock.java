@@ -0,0 +1,49 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This interface is the source of time for all the game threads (instead of System.currentTimeMillis and Thread.sleep).
+ */
+public interface Clock {
+
+    /**
+     * Returns the current time of this clock.
+     *
+     * @return - the current time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Blocks the calling thread until the specified amount of time has passed on this clock.
+     *
+     * @param millis - the number of milliseconds to sleep.
+     * @throws InterruptedException - if the calling thread was interrupted while sleeping.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Retrieves and removes the head of the queue, waiting up to the specified amount of time on this clock.
+     *
+     * @param queue  - the queue to poll.
+     * @param millis - the maximal number of milliseconds to wait.
+     * @return - the head of the queue, or null if the time has passed before an element became available.
+     * @throws InterruptedException - if the calling thread was interrupted while waiting.
+     */
+    <T> T poll(BlockingQueue<T> queue, long millis) throws InterruptedException;
+
+    /**
+     * Registers a game thread whose progress the clock should take into account (used by simulated clocks only).
+     * Note: a registered thread that was not started yet is considered as running.
+     *
+     * @param thread - the thread to register.
+     */
+    default void register(Thread thread) {}
+
+    /**
+     * Stops taking a game thread into account (e.g. when its loop ends, so a pooled thread can go on to other work).
+     *
+     * @param thread - the thread to unregister.
+     */
+    default void unregister(Thread thread) {}
+}
@@ -51,6 +51,38 @@ public class Config {
      */
     public final int players;
 
+    /**
+     * The strategies of the computer players (see computerStrategy)
+     */
+    public static final String STRATEGY_RANDOM = "random";
+    public static final String STRATEGY_SOLVER = "solver";
+
+    /**
+     * The card renderers: card images from png files, or drawn from the card features.
+     */
+    public static final String RENDERER_PNG = "png";
+    public static final String RENDERER_PROCEDURAL = "procedural";
+
+    /**
+     * The strategy of each computer player
+     */
+    private final String[] computerStrategies;
+
+    /**
+     * The average number of milliseconds a solver computer player waits before reacting to the board
+     */
+    public final long computerReactionMillis;
+
+    /**
+     * Whether solver computer players should go for different sets (rather than each choosing a random set)
+     */
+    public final boolean computerSpreadSets;
+
+    /**
+     * The maximal number of key presses per second of each computer player
+     */
+    public final double computerPressesPerSecond;
+
     /**
      * Whether to print out hints to the console or not
      */
@@ -86,6 +118,41 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * Whether the game runs on a simulated clock (time jumps forward whenever all game threads are waiting)
+     */
+    public final boolean virtualTime;
+
+    /**
+     * The seed of the dealer's random generator (0 for a random seed)
+     */
+    public final long seed;
+
+    /**
+     * The file to record the game events to, for replaying the game later (empty for no recording)
+     */
+    public final String journalFile;
+
+    /**
+     * The directory to write the memory-mapped event journal segments to, for analysing the game (empty for none)
+     */
+    public final String eventJournalDirectory;
+
+    /**
+     * The size (in bytes) of each event journal segment file
+     */
+    public final long eventJournalSegmentBytes;
+
+    /**
+     * The TCP port remote players and spectators connect to (0 for no remote players)
+     */
+    public final int remotePort;
+
+    /**
+     * How many times a second the changes of the game are sent to the remote clients
+     */
+    public final int remoteTicksPerSecond;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,6 +199,21 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The maximal number of times per second the table is repainted
+     */
+    public final int framesPerSecond;
+
+    /**
+     * The maximal number of card images kept in memory (at least the table size)
+     */
+    public final int cardImageCacheSize;
+
+    /**
+     * How the card images are made (RENDERER_PNG or RENDERER_PROCEDURAL)
+     */
+    public final String cardRenderer;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +237,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -203,6 +285,25 @@ public class Config {
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
 
+        String defaultStrategy = properties.getProperty("ComputerStrategy", STRATEGY_RANDOM).trim();
+        computerStrategies = new String[players];
+        for (int i = 0; i < players; i++) {
+            String strategy = properties.getProperty("ComputerStrategy" + (i + 1), defaultStrategy).trim().toLowerCase();
+            if (!strategy.equals(STRATEGY_RANDOM) && !strategy.equals(STRATEGY_SOLVER)) {
+                logger.severe("warning: unknown strategy " + strategy + " for player " + (i + 1) + ", using " + STRATEGY_RANDOM + ".");
+                strategy = STRATEGY_RANDOM;
+            }
+            computerStrategies[i] = strategy;
+        }
+        computerSpreadSets = Boolean.parseBoolean(properties.getProperty("ComputerSpreadSets", "False"));
+        double pressesPerSecond = Double.parseDouble(properties.getProperty("ComputerPressesPerSecond", "10"));
+        if (!(pressesPerSecond > 0)) {
+            logger.severe("warning: invalid computer presses per second " + pressesPerSecond + ", using 10.");
+            pressesPerSecond = 10;
+        }
+        computerPressesPerSecond = pressesPerSecond;
+        computerReactionMillis = (long) (Double.parseDouble(properties.getProperty("ComputerReactionSeconds", "1")) * 1000.0);
+
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
@@ -210,6 +311,18 @@ public class Config {
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        virtualTime = Boolean.parseBoolean(properties.getProperty("VirtualTime", "False"));
+        seed = Long.parseLong(properties.getProperty("Seed", "0"));
+        journalFile = properties.getProperty("JournalFile", "").trim();
+        eventJournalDirectory = properties.getProperty("EventJournalDirectory", "").trim();
+        eventJournalSegmentBytes = (long) (Double.parseDouble(properties.getProperty("EventJournalSegmentMegabytes", "16")) * 1024 * 1024);
+        remotePort = Integer.parseInt(properties.getProperty("RemotePort", "0"));
+        int ticks = Integer.parseInt(properties.getProperty("RemoteTicksPerSecond", "30"));
+        if (ticks <= 0) {
+            logger.severe("warning: invalid remote ticks per second " + ticks + ", using 30.");
+            ticks = 30;
+        }
+        remoteTicksPerSecond = ticks;
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -224,6 +337,19 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        int fps = Integer.parseInt(properties.getProperty("FramesPerSecond", "60"));
+        if (fps <= 0) {
+            logger.severe("warning: invalid frames per second " + fps + ", using 60.");
+            fps = 60;
+        }
+        framesPerSecond = fps;
+        cardImageCacheSize = Math.max(tableSize, Integer.parseInt(properties.getProperty("CardImageCacheSize", "128")));
+        String renderer = properties.getProperty("CardRenderer", RENDERER_PNG).trim().toLowerCase();
+        if (!renderer.equals(RENDERER_PNG) && !renderer.equals(RENDERER_PROCEDURAL)) {
+            logger.severe("warning: unknown card renderer " + renderer + ", using " + RENDERER_PNG + ".");
+            renderer = RENDERER_PNG;
+        }
+        cardRenderer = renderer;
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -244,4 +370,12 @@ public class Config {
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
+
+    /**
+     * @param player - the player id.
+     * @return - the strategy of the player when it is a computer player (STRATEGY_RANDOM or STRATEGY_SOLVER).
+     */
+    public String computerStrategy(int player) {
+        return computerStrategies[player];
+    }
 }
@@ -0,0 +1,265 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A command line tool for tuning the table and deck dimensions (Rows, Columns, FeatureSize, FeatureCount).
+ * Simulates many random deals and games on all cores and prints:
+ * 1. The distribution of the number of sets in a deal of config.tableSize cards (incl. the probability of no set).
+ * 2. The distribution of the number of reshuffles per game, assuming the players always find a set if there is one.
+ * <p>
+ * Usage: DealAnalyzer [config file] [number of deals] [number of games]
+ */
+public class DealAnalyzer {
+
+    /**
+     * The number of deals (or games) below which a task is not split any further.
+     */
+    private static final int DEALS_PER_TASK = 5_000;
+    private static final int GAMES_PER_TASK = 50;
+
+    /**
+     * The reshuffle counts from this value up are all counted in the last histogram bucket.
+     */
+    private static final int MAX_RESHUFFLES = 64;
+
+    private final Config config;
+    private final Util util;
+
+    public DealAnalyzer(Config config) {
+        this.config = config;
+        this.util = new UtilImpl(config);
+    }
+
+    /**
+     * The aggregated results of a range of simulations (no per deal data is kept).
+     */
+    public static class Histogram {
+
+        private final long[] counts;
+        private long total;
+        private long sum;
+
+        private Histogram(int buckets) {
+            counts = new long[buckets];
+        }
+
+        private void add(int value) {
+            ++counts[Math.min(value, counts.length - 1)];
+            ++total;
+            sum += value;
+        }
+
+        private Histogram merge(Histogram other) {
+            for (int i = 0; i < counts.length; ++i)
+                counts[i] += other.counts[i];
+            total += other.total;
+            sum += other.sum;
+            return this;
+        }
+
+        public long total() {
+            return total;
+        }
+
+        public double probability(int value) {
+            return total == 0 ? 0 : (double) counts[value] / total;
+        }
+
+        public double mean() {
+            return total == 0 ? 0 : (double) sum / total;
+        }
+
+        public int maxValue() {
+            for (int i = counts.length - 1; i > 0; --i)
+                if (counts[i] > 0) return i;
+            return 0;
+        }
+    }
+
+    private abstract class SimulationTask extends RecursiveTask<Histogram> {
+
+        final long count;
+        final SplittableRandom random;
+
+        SimulationTask(long count, SplittableRandom random) {
+            this.count = count;
+            this.random = random;
+        }
+
+        abstract int threshold();
+
+        abstract int buckets();
+
+        abstract SimulationTask subtask(long count, SplittableRandom random);
+
+        abstract int simulate(List<Integer> deck);
+
+        @Override
+        protected Histogram compute() {
+            if (count > threshold()) {
+                SimulationTask left = subtask(count / 2, random.split());
+                SimulationTask right = subtask(count - count / 2, random.split());
+                left.fork();
+                return right.compute().merge(left.join());
+            }
+            Histogram histogram = new Histogram(buckets());
+            List<Integer> deck = newDeck();
+            for (long i = 0; i < count; ++i)
+                histogram.add(simulate(deck));
+            return histogram;
+        }
+    }
+
+    private List<Integer> newDeck() {
+        return IntStream.range(0, config.deckSize).boxed().collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Counts the sets in a random deal of config.tableSize cards.
+     */
+    private class DealTask extends SimulationTask {
+
+        DealTask(long count, SplittableRandom random) {
+            super(count, random);
+        }
+
+        @Override
+        int threshold() {
+            return DEALS_PER_TASK;
+        }
+
+        @Override
+        int buckets() {
+            return (int) Math.min(binomial(config.tableSize, config.featureSize), Integer.MAX_VALUE - 8) + 1;
+        }
+
+        @Override
+        SimulationTask subtask(long count, SplittableRandom random) {
+            return new DealTask(count, random);
+        }
+
+        @Override
+        int simulate(List<Integer> deck) {
+            Dealer.shuffle(deck, random);
+            List<Integer> deal = deck.subList(0, Math.min(config.tableSize, deck.size()));
+            return util.findSets(deal, Integer.MAX_VALUE).size();
+        }
+    }
+
+    /**
+     * Plays a game in which a set is always taken from the table if there is one, and counts the reshuffles.
+     */
+    private class GameTask extends SimulationTask {
+
+        GameTask(long count, SplittableRandom random) {
+            super(count, random);
+        }
+
+        @Override
+        int threshold() {
+            return GAMES_PER_TASK;
+        }
+
+        @Override
+        int buckets() {
+            return MAX_RESHUFFLES + 1;
+        }
+
+        @Override
+        SimulationTask subtask(long count, SplittableRandom random) {
+            return new GameTask(count, random);
+        }
+
+        @Override
+        int simulate(List<Integer> deck) {
+            List<Integer> cards = new ArrayList<>(deck);
+            List<Integer> table = new ArrayList<>(config.tableSize);
+            int reshuffles = -1; // the first deal is not a reshuffle
+            while (!util.findSets(cards, 1).isEmpty()) {
+                ++reshuffles;
+                Dealer.shuffle(cards, random);
+                deal(cards, table);
+                for (List<int[]> sets = util.findSets(table, 1); !sets.isEmpty(); sets = util.findSets(table, 1)) {
+                    for (int card : sets.get(0))
+                        table.remove(Integer.valueOf(card));
+                    deal(cards, table);
+                }
+                cards.addAll(table);
+                table.clear();
+            }
+            return Math.max(reshuffles, 0);
+        }
+
+        private void deal(List<Integer> cards, List<Integer> table) {
+            while (table.size() < config.tableSize && !cards.isEmpty())
+                table.add(cards.remove(cards.size() - 1));
+        }
+    }
+
+    private static long binomial(int n, int k) {
+        if (k < 0 || k > n) return 0;
+        long result = 1;
+        for (int i = 1; i <= k; ++i)
+            result = result * (n - k + i) / i;
+        return result;
+    }
+
+    /**
+     * Simulates random deals of config.tableSize cards.
+     *
+     * @param deals - the number of deals to simulate.
+     * @param seed  - the seed of the random generator (the same seed always gives the same results).
+     * @return - the histogram of the number of sets in a deal.
+     */
+    public Histogram analyzeDeals(long deals, long seed) {
+        return ForkJoinPool.commonPool().invoke(new DealTask(deals, new SplittableRandom(seed)));
+    }
+
+    /**
+     * Simulates complete games.
+     *
+     * @param games - the number of games to simulate.
+     * @param seed  - the seed of the random generator (the same seed always gives the same results).
+     * @return - the histogram of the number of reshuffles in a game.
+     */
+    public Histogram analyzeGames(long games, long seed) {
+        return ForkJoinPool.commonPool().invoke(new GameTask(games, new SplittableRandom(seed)));
+    }
+
+    public static void main(String[] args) {
+        Logger logger = Logger.getLogger("DealAnalyzer");
+        Config config = new Config(logger, args.length > 0 ? args[0] : "config.properties");
+        long deals = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        long games = args.length > 2 ? Long.parseLong(args[2]) : 10_000;
+        long seed = System.nanoTime();
+        DealAnalyzer analyzer = new DealAnalyzer(config);
+
+        System.out.println("deck: " + config.deckSize + " cards (" + config.featureCount + " features of " + config.featureSize
+                + " values), table: " + config.rows + "x" + config.columns + " (" + config.tableSize + " cards), seed: " + seed);
+
+        long start = System.currentTimeMillis();
+        Histogram sets = analyzer.analyzeDeals(deals, seed);
+        System.out.printf("%d deals (%d ms)%n", sets.total(), System.currentTimeMillis() - start);
+        System.out.printf("  P(no set) = %.6f%n", sets.probability(0));
+        System.out.printf("  E[sets]   = %.4f%n", sets.mean());
+        for (int i = 0; i <= sets.maxValue(); ++i)
+            System.out.printf("  %4d sets: %.6f%n", i, sets.probability(i));
+
+        start = System.currentTimeMillis();
+        Histogram reshuffles = analyzer.analyzeGames(games, seed);
+        System.out.printf("%d games (%d ms)%n", reshuffles.total(), System.currentTimeMillis() - start);
+        System.out.printf("  E[reshuffles] = %.4f%n", reshuffles.mean());
+        for (int i = 0; i <= reshuffles.maxValue(); ++i)
+            System.out.printf("  %4d%s reshuffles: %.6f%n", i, i == MAX_RESHUFFLES ? "+" : "", reshuffles.probability(i));
+    }
+}
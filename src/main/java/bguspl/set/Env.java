@@ -8,11 +8,31 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Clock clock;
+    public final Journal journal;
+    public final Metrics metrics;
+    public final RuntimeSettings settings;
 
-    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock, Journal journal, Metrics metrics) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.clock = clock;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.settings = new RuntimeSettings(config);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock, Journal journal) {
+        this(logger, config, ui, util, clock, journal, new Metrics());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock) {
+        this(logger, config, ui, util, clock, Journal.NONE);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, new SystemClock());
     }
 }
@@ -0,0 +1,125 @@
+package bguspl.set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JDK Flight Recorder events of the game, for finding lock convoys and latency spikes in a recording (next to the
+ * GC, thread park and monitor events of the JVM).
+ * An event that is not enabled in the recording costs a single check, so they are always emitted:
+ * <pre>
+ *     FlightEvents.ClaimJudged event = new FlightEvents.ClaimJudged();
+ *     event.begin();
+ *     ...
+ *     if (event.shouldCommit()) { event.player = id; ...; event.commit(); }
+ * </pre>
+ * Record them with e.g. -XX:StartFlightRecording:filename=game.jfr and look for the "Set Game" category.
+ */
+public final class FlightEvents {
+
+    private static final String CATEGORY = "Set Game";
+
+    private FlightEvents() {
+    }
+
+    @Name("bguspl.set.ClaimSubmitted")
+    @Label("Claim Submitted")
+    @Description("A player placed its last token and joined the claim queue")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ClaimSubmitted extends Event {
+        @Label("Player")
+        public int player;
+
+        @Label("Queue Depth")
+        @Description("The number of claims waiting for the dealer, including this one")
+        public int queueDepth;
+    }
+
+    @Name("bguspl.set.ClaimJudged")
+    @Label("Claim Judged")
+    @Description("The dealer checked the cards of a claim")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ClaimJudged extends Event {
+        @Label("Player")
+        public int player;
+
+        @Label("Legal")
+        public boolean legal;
+
+        @Label("Board Version")
+        public long boardVersion;
+    }
+
+    @Name("bguspl.set.CardsPlaced")
+    @Label("Cards Placed")
+    @Description("The dealer placed cards from the deck on the table")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class CardsPlaced extends Event {
+        @Label("Cards")
+        public int cards;
+
+        @Label("Deck Size")
+        @Description("The number of cards left in the deck")
+        public int deckSize;
+    }
+
+    @Name("bguspl.set.CardsRemoved")
+    @Label("Cards Removed")
+    @Description("The dealer removed the cards of a set from the table")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class CardsRemoved extends Event {
+        @Label("Cards")
+        public int cards;
+
+        @Label("Released Claims")
+        @Description("The claims that lost a token and left the queue")
+        public int releasedClaims;
+    }
+
+    @Name("bguspl.set.TableFrozen")
+    @Label("Table Frozen")
+    @Description("The dealer held all the slot locks, from freezing the table until unfreezing it")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class TableFrozen extends Event {
+        @Label("Slots")
+        public int slots;
+    }
+
+    @Name("bguspl.set.PlayerFrozen")
+    @Label("Player Frozen")
+    @Description("A player was frozen after a point or a penalty")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class PlayerFrozen extends Event {
+        @Label("Player")
+        public int player;
+
+        @Label("Penalty")
+        @Description("True for a penalty, false for a point")
+        public boolean penalty;
+
+        @Label("Freeze")
+        @Timespan(Timespan.MILLISECONDS)
+        public long freeze;
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Description("The dealer shuffled the deck")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class Reshuffle extends Event {
+        @Label("Deck Size")
+        public int deckSize;
+    }
+}
@@ -0,0 +1,200 @@
+package bguspl.set;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * The threads a game runs on: the loops of the game (the dealer, the players and the solver computer players), each
+ * of which blocks a thread for the whole game, and a scheduler for the random computer players.
+ * When the executors are event driven, the players and the computer players do not get loops: they run as short steps
+ * of the scheduler whenever they have something to do (see Player.start), and only the dealer blocks a thread.
+ * A standalone game starts a thread per loop and has a scheduler of its own, while the games of a GameServer share a
+ * bounded pool of threads and a single scheduler.
+ */
+public class GameExecutors {
+
+    /**
+     * A loop started by the game, which can be interrupted and joined wherever it runs.
+     */
+    public final class Task implements Runnable {
+
+        public final String name;
+        private final Runnable runnable;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Thread thread = null;
+        private boolean interrupted = false;
+
+        private Task(Runnable runnable, String name) {
+            this.runnable = runnable;
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            Thread current = Thread.currentThread();
+            String threadName = current.getName();
+            current.setName(name);
+            synchronized (this) {
+                thread = current;
+                if (interrupted) current.interrupt(); // interrupted before it started
+            }
+            ThreadLogger.logStart(logger, name);
+            try {
+                runnable.run();
+            } catch (Throwable failure) {
+                report(name, failure);
+            } finally {
+                ThreadLogger.logStop(logger, name);
+                synchronized (this) {
+                    thread = null;
+                }
+                Thread.interrupted(); // a pooled thread goes on to run other tasks
+                current.setName(threadName);
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Interrupts the task if it is running, or as soon as it starts. Does nothing once the task is done.
+         */
+        public synchronized void interrupt() {
+            interrupted = true;
+            if (thread != null) thread.interrupt();
+        }
+
+        /**
+         * Waits for the task to finish.
+         */
+        public void join() throws InterruptedException {
+            finished.await();
+        }
+
+        /**
+         * Waits for the task to finish, for at most the given time.
+         *
+         * @return - true iff the task finished.
+         */
+        public boolean join(long timeout, TimeUnit unit) throws InterruptedException {
+            return finished.await(timeout, unit);
+        }
+    }
+
+    private final Logger logger;
+    private final Executor loops;
+    private final ScheduledExecutorService scheduler;
+    private final String prefix;
+    private final Consumer<Throwable> onFailure;
+    private final boolean ownsScheduler;
+    private final boolean eventDriven;
+
+    /**
+     * @param logger        - the logger.
+     * @param loops         - runs each task on a thread of its own until it returns.
+     * @param scheduler     - the scheduler of the random computer players.
+     * @param prefix        - prepended to the names of the tasks.
+     * @param onFailure     - called (by the failed task) when a task throws.
+     * @param ownsScheduler - true iff the scheduler is shut down by close().
+     */
+    public GameExecutors(Logger logger, Executor loops, ScheduledExecutorService scheduler, String prefix,
+                         Consumer<Throwable> onFailure, boolean ownsScheduler) {
+        this(logger, loops, scheduler, prefix, onFailure, ownsScheduler, false);
+    }
+
+    /**
+     * @param logger        - the logger.
+     * @param loops         - runs each task on a thread of its own until it returns.
+     * @param scheduler     - the scheduler of the computer players (and of the players, when event driven).
+     * @param prefix        - prepended to the names of the tasks.
+     * @param onFailure     - called (by the failed task) when a task throws.
+     * @param ownsScheduler - true iff the scheduler is shut down by close().
+     * @param eventDriven   - true iff the players run as steps of the scheduler instead of loops.
+     */
+    public GameExecutors(Logger logger, Executor loops, ScheduledExecutorService scheduler, String prefix,
+                         Consumer<Throwable> onFailure, boolean ownsScheduler, boolean eventDriven) {
+        this.logger = logger;
+        this.loops = loops;
+        this.scheduler = scheduler;
+        this.prefix = prefix;
+        this.onFailure = onFailure;
+        this.ownsScheduler = ownsScheduler;
+        this.eventDriven = eventDriven;
+    }
+
+    /**
+     * The executors of a standalone game: a new thread per task and a scheduler of its own.
+     *
+     * @param logger           - the logger.
+     * @param schedulerThreads - the number of scheduler threads.
+     */
+    public static GameExecutors threadPerTask(Logger logger, int schedulerThreads) {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(schedulerThreads, daemon("computer-players"));
+        return new GameExecutors(logger, runnable -> new Thread(runnable).start(), scheduler, "", failure -> {}, true);
+    }
+
+    /**
+     * @param name - the name of the threads.
+     * @return - a factory of daemon threads.
+     */
+    public static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Starts a task.
+     *
+     * @param runnable - the loop.
+     * @param name     - the name of the task (and of the thread while it runs the task).
+     * @return - the task.
+     */
+    public Task start(Runnable runnable, String name) {
+        Task task = new Task(runnable, prefix + name);
+        loops.execute(task);
+        return task;
+    }
+
+    /**
+     * @return - the scheduler of the computer players (and of the players, when event driven).
+     */
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return - true iff the players run as steps of the scheduler instead of loops.
+     */
+    public boolean eventDriven() {
+        return eventDriven;
+    }
+
+    /**
+     * Reports the failure of work that runs on the scheduler, as the failure of a task is reported.
+     *
+     * @param name    - the name of the failed work.
+     * @param failure - what it threw.
+     */
+    public void failed(String name, Throwable failure) {
+        report(prefix + name, failure);
+    }
+
+    private void report(String name, Throwable failure) {
+        logger.severe("thread " + name + " failed: " + failure);
+        onFailure.accept(failure);
+    }
+
+    /**
+     * Cancels the scheduled presses if the scheduler is owned (a shared scheduler is shut down by its owner).
+     */
+    public void close() {
+        if (ownsScheduler) scheduler.shutdownNow();
+    }
+}
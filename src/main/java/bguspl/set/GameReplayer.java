@@ -0,0 +1,187 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Replays a game recorded by BinaryJournal, single threaded and with no delays.
+ * The dealer's decisions are re-done rather than copied: the deck is reshuffled with the recorded seed, the cards are
+ * dealt from it onto a Table, and every claim is judged again from the tokens on the table. Any difference from the
+ * journal (a different card dealt, a different verdict or a different final score) is reported as a mismatch.
+ * <p>
+ * Usage: GameReplayer [journal file]
+ */
+public class GameReplayer {
+
+    private final Path path;
+
+    private Util util;
+    private Table table;
+    private int legalSetSize;
+    private List<Integer> deck;
+    private Random random;
+    private List<Set<Integer>> tokens;
+    private int[] scores;
+    private int[] recordedScores;
+    private boolean clearingBoard;
+    private long events;
+    private final List<String> mismatches = new ArrayList<>();
+
+    public GameReplayer(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * The outcome of a replay.
+     */
+    public static class Result {
+        public final long events;
+        public final int[] scores;
+        public final int[] recordedScores;
+        public final List<String> mismatches;
+
+        private Result(long events, int[] scores, int[] recordedScores, List<String> mismatches) {
+            this.events = events;
+            this.scores = scores;
+            this.recordedScores = recordedScores;
+            this.mismatches = mismatches;
+        }
+
+        /**
+         * @return - true iff the replay reproduced the recorded game.
+         */
+        public boolean reproduced() {
+            return mismatches.isEmpty();
+        }
+    }
+
+    /**
+     * Replays the journal.
+     *
+     * @return - the result of the replay.
+     * @throws IOException - if the journal cannot be read.
+     */
+    public Result replay() throws IOException {
+        BinaryJournal.read(path, this::onHeader, this::apply);
+        for (int player = 0; player < scores.length; ++player)
+            if (recordedScores[player] >= 0 && recordedScores[player] != scores[player])
+                mismatch("player " + (player + 1) + " scored " + scores[player] + " but " + recordedScores[player] + " was recorded");
+        return new Result(events, scores, recordedScores, mismatches);
+    }
+
+    private void onHeader(BinaryJournal.Header header) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.put("LogLevel", Level.OFF.getName());
+        properties.put("FeatureSize", Integer.toString(header.featureSize));
+        properties.put("FeatureCount", Integer.toString(header.featureCount));
+        properties.put("Rows", Integer.toString(header.rows));
+        properties.put("Columns", Integer.toString(header.columns));
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(header.players));
+        properties.put("TableDelaySeconds", "0");
+        Config config = new Config(logger, properties);
+
+        util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util, new VirtualClock());
+        table = new Table(env);
+        legalSetSize = config.featureSize;
+        deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        tokens = new ArrayList<>();
+        for (int player = 0; player < config.players; ++player)
+            tokens.add(new LinkedHashSet<>());
+        scores = new int[config.players];
+        recordedScores = new int[config.players];
+        Arrays.fill(recordedScores, -1);
+    }
+
+    private void apply(BinaryJournal.Record record) {
+        ++events;
+        switch (record.event) {
+            case SEED:
+                random = new Random(record.time);
+                break;
+            case SHUFFLE:
+                clearingBoard = false;
+                Dealer.shuffle(deck, random);
+                break;
+            case CARD_PLACED:
+                clearingBoard = false;
+                Integer expected = deck.isEmpty() ? null : deck.remove(0);
+                if (expected == null || expected != record.card)
+                    mismatch("card " + record.card + " was placed in slot " + record.slot + " but the deck had " + expected);
+                table.placeCard(record.card, record.slot);
+                break;
+            case BOARD_CLEARED:
+                clearingBoard = true;
+                tokens.forEach(Set::clear);
+                break;
+            case CARD_REMOVED:
+                if (clearingBoard) deck.add(record.card);
+                tokens.forEach(playerTokens -> playerTokens.remove(record.slot));
+                table.removeCard(record.slot);
+                break;
+            case TOKEN_PLACED:
+                tokens.get(record.player).add(record.slot);
+                break;
+            case TOKEN_REMOVED:
+                tokens.get(record.player).remove(record.slot);
+                break;
+            case VERDICT:
+                boolean point = judge(record.player);
+                if (point != (record.card == 1))
+                    mismatch("player " + (record.player + 1) + " got a " + (record.card == 1 ? "point" : "penalty") + " at " + record.time);
+                if (point) {
+                    ++scores[record.player];
+                    tokens.get(record.player).clear();
+                }
+                break;
+            case SCORE:
+                recordedScores[record.player] = record.card;
+                break;
+            default: // KEY_PRESS and CLAIM do not change the state of the game
+                break;
+        }
+    }
+
+    private boolean judge(int player) {
+        Set<Integer> slots = tokens.get(player);
+        if (slots.size() != legalSetSize) return false;
+        int[] cards = slots.stream().mapToInt(table::slotToCard).toArray();
+        return util.testSet(cards);
+    }
+
+    private void mismatch(String message) {
+        mismatches.add("event " + events + ": " + message);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "journal.bin");
+        long start = System.nanoTime();
+        Result result = new GameReplayer(path).replay();
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+
+        System.out.println("replayed " + result.events + " events in " + elapsedMicros + " us");
+        for (int player = 0; player < result.scores.length; ++player)
+            System.out.println("player " + (player + 1) + ": " + result.scores[player]
+                    + (result.recordedScores[player] >= 0 ? " (recorded " + result.recordedScores[player] + ")" : ""));
+        result.mismatches.forEach(System.out::println);
+        System.out.println(result.reproduced() ? "the game was reproduced" : result.mismatches.size() + " mismatches");
+    }
+}
@@ -0,0 +1,342 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import javax.management.JMException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent games, each with an Env, Table, Dealer and Players of its own, on threads shared by all the
+ * games: a bounded pool runs the dealer loops, each of which blocks a thread for the whole game, and a single scheduler
+ * runs all the players and computer players, in short steps whenever they have a key press, a verdict or the end of a
+ * freeze to handle, so a game holds a single pool thread. Games in virtual time keep a loop per player and solver
+ * computer player (the clock of such a game advances when all its loops wait on it), each blocking a pool thread.
+ * A game is admitted only if the pool has a thread left for each of its loops, otherwise it is rejected, so a full
+ * server never starves the games it runs. A game whose dealer or player throws is terminated on its own, the other
+ * games go on.
+ * <p>
+ * Usage: GameServer [config file] [games] [threads] - plays computer games concurrently and reports how they ended.
+ */
+public class GameServer implements AutoCloseable {
+
+    /**
+     * The life cycle of a game.
+     */
+    public enum State {
+        RUNNING,    // playing
+        DRAINING,   // playing the last round
+        FINISHED,   // ended on its own and announced the winners
+        TERMINATED, // ended by terminate()
+        FAILED      // ended because one of its loops threw
+    }
+
+    /**
+     * A game hosted by the server.
+     */
+    public final class Game {
+
+        public final int id;
+        public final Env env;
+        public final Table table;
+        public final Dealer dealer;
+        public final Player[] players;
+
+        /**
+         * The number of pool threads the game holds while it runs.
+         */
+        private final int loops;
+        private final GameExecutors executors;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private State state = State.RUNNING;
+        private Throwable failure = null;
+        private boolean terminated = false;
+
+        private Game(int id, Config config, Function<Player[], UserInterface> ui, int loops) {
+            this.id = id;
+            this.loops = loops;
+            String name = "game-" + id;
+            Util util = new UtilImpl(config);
+            players = new Player[config.players];
+            Clock clock = config.virtualTime ? new VirtualClock() : new SystemClock();
+            env = new Env(logger, config, new UserInterfaceDecorator(logger, util, ui.apply(players)), util, clock,
+                    Journal.NONE, new Metrics());
+            try {
+                env.metrics.register(name);
+                env.settings.register(name);
+            } catch (JMException e) {
+                logger.severe("cannot publish the metrics and settings of " + name + ": " + e.getMessage());
+            }
+            table = new Table(env);
+            executors = new GameExecutors(logger, pool, scheduler, name + " ", this::fail, false, eventDriven(config));
+            dealer = new Dealer(env, table, players, executors);
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+        }
+
+        /**
+         * @return - the state of the game.
+         */
+        public synchronized State state() {
+            return state;
+        }
+
+        /**
+         * @return - what made the game fail (null unless it failed).
+         */
+        public synchronized Throwable failure() {
+            return failure;
+        }
+
+        /**
+         * Ends the game after the current round, announcing the winners.
+         */
+        public void drain() {
+            synchronized (this) {
+                if (state == State.RUNNING) state = State.DRAINING;
+            }
+            dealer.drain();
+        }
+
+        /**
+         * Ends the game now, without announcing the winners.
+         */
+        public void terminate() {
+            synchronized (this) {
+                terminated = true;
+            }
+            dealer.terminate();
+        }
+
+        /**
+         * Waits for the game to end.
+         */
+        public void await() throws InterruptedException {
+            finished.await();
+        }
+
+        /**
+         * Waits for the game to end, for at most the given time.
+         *
+         * @return - true iff the game ended.
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return finished.await(timeout, unit);
+        }
+
+        /**
+         * Plays the game on the thread of the dealer loop, and cleans up after it whichever way it ended.
+         */
+        private void play() {
+            try {
+                dealer.run();
+            } catch (Throwable failure) {
+                logger.severe("dealer of game " + id + " failed: " + failure);
+                fail(failure);
+            } finally {
+                dealer.terminate(); // stops and joins the players, if the dealer did not
+                env.ui.dispose();
+                env.metrics.unregister();
+                env.settings.unregister();
+                games.remove(id);
+                threads.release(loops);
+                synchronized (this) {
+                    state = failure != null ? State.FAILED : terminated ? State.TERMINATED : State.FINISHED;
+                }
+                if (logger.isLoggable(Level.INFO)) logger.info("game " + id + " " + state() + ", metrics: " + env.metrics.snapshot());
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Called by a loop (or a step) of the game that threw. The game is terminated by a cleanup thread of its own, since
+         * terminating it joins the loops (the failed one included), which would block a shared thread for as long.
+         */
+        private void fail(Throwable failure) {
+            synchronized (this) {
+                if (this.failure != null) return; // already failed, and being terminated
+                this.failure = failure;
+            }
+            GameExecutors.daemon("game-" + id + " cleanup").newThread(dealer::terminate).start();
+        }
+    }
+
+    private final Logger logger;
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The pool threads not held by a game.
+     */
+    private final Semaphore threads;
+
+    private final Map<Integer, Game> games = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile boolean accepting = true;
+
+    /**
+     * @param logger           - the logger.
+     * @param maxThreads       - the maximal number of threads running game loops (of all the games together).
+     * @param schedulerThreads - the number of threads running the players (of all the games together).
+     */
+    public GameServer(Logger logger, int maxThreads, int schedulerThreads) {
+        this.logger = logger;
+        pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                GameExecutors.daemon("game-loops"));
+        pool.allowCoreThreadTimeOut(true);
+        scheduler = Executors.newScheduledThreadPool(schedulerThreads, GameExecutors.daemon("game-players"));
+        threads = new Semaphore(maxThreads);
+    }
+
+    /**
+     * @param config - the game configuration.
+     * @return - the number of loops of a game, i.e. the number of pool threads it holds while it runs.
+     */
+    public static int loops(Config config) {
+        if (eventDriven(config))
+            return 1; // the dealer
+        int loops = 1 + config.players; // the dealer and the players
+        for (int player = config.humanPlayers; player < config.players; player++)
+            if (Config.STRATEGY_SOLVER.equals(config.computerStrategy(player))) ++loops;
+        return loops;
+    }
+
+    /**
+     * @param config - the game configuration.
+     * @return - true iff the players of a game run as steps of the shared scheduler rather than loops of their own.
+     */
+    public static boolean eventDriven(Config config) {
+        return !config.virtualTime;
+    }
+
+    /**
+     * Creates a game and starts it.
+     *
+     * @param config - the game configuration.
+     * @param ui     - creates the user interface of the game given its players (it may return null).
+     * @return - the game.
+     * @throws RejectedExecutionException - if the server is draining, or it does not have enough threads left.
+     */
+    public Game create(Config config, Function<Player[], UserInterface> ui) {
+        if (!accepting) throw new RejectedExecutionException("the server does not accept new games");
+        int loops = loops(config);
+        if (!threads.tryAcquire(loops))
+            throw new RejectedExecutionException("no threads left for a game of " + loops + " loops (" + threads.availablePermits() + " left)");
+        try {
+            Game game = new Game(nextId.incrementAndGet(), config, ui, loops);
+            games.put(game.id, game);
+            game.executors.start(game::play, "dealer");
+            return game;
+        } catch (RuntimeException | Error e) {
+            threads.release(loops);
+            throw e;
+        }
+    }
+
+    /**
+     * @return - the games currently running.
+     */
+    public List<Game> games() {
+        return new ArrayList<>(games.values());
+    }
+
+    /**
+     * Stops accepting new games and ends all the running games after their current round.
+     */
+    public void drain() {
+        accepting = false;
+        for (Game game : games.values())
+            game.drain();
+    }
+
+    /**
+     * Waits for all the running games to end.
+     *
+     * @return - true iff all the games ended before the timeout.
+     */
+    public boolean awaitGames(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Game game : games())
+            if (!game.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) return false;
+        return true;
+    }
+
+    /**
+     * Terminates all the games and stops the threads. If interrupted while waiting for the games to end, it stops the
+     * threads without waiting any longer (and keeps the interrupt status).
+     */
+    @Override
+    public void close() {
+        accepting = false;
+        for (Game game : games())
+            game.terminate();
+        try {
+            awaitGames(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool.shutdown();
+        scheduler.shutdownNow();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Logger logger = Logger.getLogger("GameServer");
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties(args.length > 0 ? args[0] : "config.properties", logger);
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 8 * Runtime.getRuntime().availableProcessors();
+
+        properties.put("LogLevel", Level.OFF.getName());
+        properties.put("HumanPlayers", "0");
+        properties.put("Hints", "False");
+        Config config = new Config(logger, properties);
+
+        long start = System.currentTimeMillis();
+        List<Game> played = new ArrayList<>();
+        Queue<Game> running = new ArrayDeque<>();
+        try (GameServer server = new GameServer(logger, maxThreads, Runtime.getRuntime().availableProcessors())) {
+            while (played.size() < count) {
+                try {
+                    Game game = server.create(config, players -> null);
+                    played.add(game);
+                    running.add(game);
+                } catch (RejectedExecutionException full) {
+                    if (running.isEmpty()) {
+                        System.out.println(full.getMessage());
+                        return;
+                    }
+                    running.poll().await(); // wait for a game to make room
+                }
+            }
+            int[] states = new int[State.values().length];
+            for (Game game : played) {
+                game.await();
+                ++states[game.state().ordinal()];
+                System.out.printf("game %d: %s, scores %s%n", game.id, game.state(),
+                        Arrays.toString(Arrays.stream(game.players).mapToInt(Player::score).toArray()));
+            }
+            System.out.printf("%d games in %d ms on at most %d threads: %d finished, %d failed%n", played.size(),
+                    System.currentTimeMillis() - start, maxThreads, states[State.FINISHED.ordinal()], states[State.FAILED.ordinal()]);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package bguspl.set;
+
+/**
+ * This interface records the events of a game, so the game can be replayed (see GameReplayer) or analysed later.
+ */
+public interface Journal extends AutoCloseable {
+
+    /**
+     * The types of the recorded events.
+     * Note: the ordinal is written to the journal, so new types must only be added at the end.
+     */
+    enum Event {
+        /** The seed of the dealer's random generator (in the time field). */
+        SEED,
+        /** A key press accepted by a player. */
+        KEY_PRESS,
+        /** A token placed by a player. */
+        TOKEN_PLACED,
+        /** A token removed by a player. */
+        TOKEN_REMOVED,
+        /** A player entered the claim queue with a full set of tokens. */
+        CLAIM,
+        /** The dealer's verdict on a claim (card is 1 for a point and 0 for a penalty). */
+        VERDICT,
+        /** A card placed on the table. */
+        CARD_PLACED,
+        /** A card removed from the table. */
+        CARD_REMOVED,
+        /** The dealer shuffled the deck. */
+        SHUFFLE,
+        /** The dealer started returning all the cards on the table to the deck. */
+        BOARD_CLEARED,
+        /** The final score of a player (in the card field). */
+        SCORE
+    }
+
+    /**
+     * A journal that records nothing.
+     */
+    Journal NONE = (event, player, slot, card, time) -> {};
+
+    /**
+     * Records an event. Fields that are irrelevant to the event should be -1.
+     *
+     * @param event  - the event type.
+     * @param player - the player id.
+     * @param slot   - the slot.
+     * @param card   - the card id.
+     * @param time   - the time of the event (in milliseconds).
+     */
+    void record(Event event, int player, int slot, int card, long time);
+
+    /**
+     * Records an event that happened on a given version of the board (see Table.boardVersion). Journals that do not
+     * keep the board version record it as the event alone.
+     *
+     * @param event        - the event type.
+     * @param player       - the player id.
+     * @param slot         - the slot.
+     * @param card         - the card id.
+     * @param boardVersion - the version of the board.
+     * @param time         - the time of the event (in milliseconds).
+     */
+    default void record(Event event, int player, int slot, int card, long boardVersion, long time) {
+        record(event, player, slot, card, time);
+    }
+
+    /**
+     * @param first  - a journal.
+     * @param second - another journal.
+     * @return - a journal that records every event in both journals.
+     */
+    static Journal both(Journal first, Journal second) {
+        if (first == NONE) return second;
+        if (second == NONE) return first;
+        return new Journal() {
+            @Override
+            public void record(Event event, int player, int slot, int card, long time) {
+                first.record(event, player, slot, card, time);
+                second.record(event, player, slot, card, time);
+            }
+
+            @Override
+            public void record(Event event, int player, int slot, int card, long boardVersion, long time) {
+                first.record(event, player, slot, card, boardVersion, time);
+                second.record(event, player, slot, card, boardVersion, time);
+            }
+
+            @Override
+            public void close() {
+                try {
+                    first.close();
+                } finally {
+                    second.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes out any buffered events and releases the underlying resources.
+     */
+    @Override
+    default void close() {}
+}
@@ -0,0 +1,286 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Load generation mode: plays games of one Dealer and Table against a large number of computer players (bots),
+ * in order to find the scaling limit of the claim pipeline.
+ * The bots are all driven by a shared scheduler, but each of them is a Player, and every Player still runs its loop
+ * (taking its key presses and placing the tokens) on a thread of its own, so a game of N bots runs N + 1 threads.
+ * Each bot thinks for a while, picks three slots (a real set with probability accuracy, otherwise random slots) and
+ * presses them at its press rate.
+ * Every second, and at the end, it reports the claim throughput and the dealer saturation: the claim queue depth,
+ * the claims discarded as stale (the cards were taken before the dealer got to them) and the dealer CPU time.
+ * <p>
+ * Usage: LoadGenerator [config file] [bots] [presses per second] [think millis] [accuracy] [duration seconds]
+ */
+public class LoadGenerator {
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 10;
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private final Config config;
+    private final Logger logger;
+    private final long pressIntervalMicros;
+    private final long thinkMillis;
+    private final double accuracy;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The statistics of all the games played so far.
+     */
+    private final CountingJournal journal = new CountingJournal();
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Counter staleClaims = metrics.counter("table.staleClaims");
+    private final LongAdder pressesRejected = new LongAdder();
+    private long depthSamples;
+    private long depthSum;
+    private int depthMax;
+    private long dealerCpuNanos;
+    private long games;
+
+    public LoadGenerator(Logger logger, Config config, double pressRate, long thinkMillis, double accuracy) {
+        this.logger = logger;
+        this.config = config;
+        this.pressIntervalMicros = (long) (1_000_000 / pressRate);
+        this.thinkMillis = thinkMillis;
+        this.accuracy = accuracy;
+        this.scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * A journal that only counts the events.
+     */
+    private static class CountingJournal implements Journal {
+
+        private final LongAdder[] counts = new LongAdder[Event.values().length];
+        private final LongAdder points = new LongAdder();
+
+        private CountingJournal() {
+            for (int i = 0; i < counts.length; ++i)
+                counts[i] = new LongAdder();
+        }
+
+        @Override
+        public void record(Event event, int player, int slot, int card, long time) {
+            counts[event.ordinal()].increment();
+            if (event == Event.VERDICT && card == 1) points.increment();
+        }
+
+        long count(Event event) {
+            return counts[event.ordinal()].sum();
+        }
+    }
+
+    /**
+     * A computer player, driven by the shared scheduler.
+     */
+    private class Bot implements Runnable {
+
+        private final Player player;
+        private final Table table;
+        private final Random random;
+        private final int[] plan;
+        private int planned;
+        private int next;
+        private volatile boolean stopped;
+
+        private Bot(Player player, Table table) {
+            this.player = player;
+            this.table = table;
+            this.random = new Random(player.id);
+            this.plan = new int[2 * config.featureSize];
+        }
+
+        private void start() {
+            scheduler.schedule(this, random.nextInt((int) thinkMillis + 1), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            if (stopped) return;
+            long delayMicros = pressIntervalMicros;
+            if (next == planned) {
+                plan();
+                delayMicros = thinkMillis * 1000 / 2 + (long) (random.nextDouble() * thinkMillis * 1000);
+            } else if (player.keyPressed(plan[next]))
+                ++next;
+            else
+                pressesRejected.increment();
+            scheduler.schedule(this, delayMicros, TimeUnit.MICROSECONDS);
+        }
+
+        /**
+         * Chooses the slots of the next claim, and plans the presses needed (removing the tokens left from before).
+         */
+        private void plan() {
+            int[] target = random.nextDouble() < accuracy ? setOnTable() : null;
+            if (target == null) target = randomSlots();
+
+            planned = next = 0;
+            int[] tokens = player.getTokens();
+            int numTokens = Math.min(player.getNumTokens(), tokens.length);
+            for (int i = 0; i < numTokens; ++i)
+                if (!contains(target, target.length, tokens[i])) plan[planned++] = tokens[i];
+            for (int slot : target)
+                if (!contains(tokens, numTokens, slot)) plan[planned++] = slot;
+        }
+
+        private int[] setOnTable() {
+            return table.solver.snapshot().setFor(player.id, config.computerSpreadSets, random);
+        }
+
+        private int[] randomSlots() {
+            int[] slots = new int[config.featureSize];
+            for (int i = 0; i < slots.length; ++i) {
+                do slots[i] = random.nextInt(config.tableSize);
+                while (contains(slots, i, slots[i]));
+            }
+            return slots;
+        }
+    }
+
+    private static boolean contains(int[] array, int length, int value) {
+        for (int i = 0; i < length; ++i)
+            if (array[i] == value) return true;
+        return false;
+    }
+
+    /**
+     * Plays games one after the other until the duration is over.
+     *
+     * @param durationMillis - the (real) time to generate load for.
+     */
+    public void run(long durationMillis) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        long end = start + durationMillis;
+        long nextReport = start + REPORT_INTERVAL_MILLIS;
+        long[] lastReport = new long[]{start, 0, 0, 0};
+
+        while (System.currentTimeMillis() < end) {
+            Util util = new UtilImpl(config);
+            Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util, new SystemClock(), journal, metrics);
+            Table table = new Table(env);
+            Player[] players = new Player[config.players];
+            Dealer dealer = new Dealer(env, table, players);
+            Bot[] bots = new Bot[players.length];
+            for (int i = 0; i < players.length; ++i) {
+                players[i] = new Player(env, dealer, table, i, true); // the input is generated by the bots
+                bots[i] = new Bot(players[i], table);
+            }
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
+            dealerThread.startWithLog();
+            for (Bot bot : bots) bot.start();
+
+            long gameCpuNanos = 0;
+            while (dealerThread.isAlive() && System.currentTimeMillis() < end) {
+                dealerThread.join(SAMPLE_INTERVAL_MILLIS);
+                int depth = table.queueOfPlayers.size();
+                ++depthSamples;
+                depthSum += depth;
+                depthMax = Math.max(depthMax, depth);
+                long cpu = threads.getThreadCpuTime(dealerThread.getId());
+                if (cpu > 0) gameCpuNanos = cpu;
+
+                long now = System.currentTimeMillis();
+                if (now >= nextReport) {
+                    report(now - start, lastReport, dealerCpuNanos + gameCpuNanos);
+                    nextReport += REPORT_INTERVAL_MILLIS;
+                }
+            }
+
+            for (Bot bot : bots) bot.stopped = true;
+            if (dealerThread.isAlive()) dealer.terminate();
+            dealerThread.joinWithLog();
+            dealerCpuNanos += gameCpuNanos;
+            ++games;
+        }
+        scheduler.shutdownNow();
+        summary(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return - the number of claims made so far.
+     */
+    long claims() {
+        return journal.count(Journal.Event.CLAIM);
+    }
+
+    /**
+     * @return - the number of claims the dealer judged so far.
+     */
+    long verdicts() {
+        return journal.count(Journal.Event.VERDICT);
+    }
+
+    /**
+     * @return - the number of claims discarded as stale so far (the claims still in the queue are not counted).
+     */
+    long staleClaims() {
+        return staleClaims.get();
+    }
+
+    private void report(long elapsedMillis, long[] last, long cpuNanos) {
+        long now = System.currentTimeMillis();
+        double seconds = (now - last[0]) / 1000.0;
+        long claims = journal.count(Journal.Event.CLAIM);
+        long verdicts = journal.count(Journal.Event.VERDICT);
+        System.out.printf("[%6.1fs] claims/s: %8.1f  verdicts/s: %8.1f  stale: %6d  queue avg/max: %6.1f/%d  dealer cpu: %5.1f%%%n",
+                elapsedMillis / 1000.0, (claims - last[1]) / seconds, (verdicts - last[2]) / seconds, staleClaims(),
+                depthSamples == 0 ? 0.0 : (double) depthSum / depthSamples, depthMax,
+                100.0 * (cpuNanos - last[3]) / ((now - last[0]) * NANOS_PER_MILLI));
+        last[0] = now;
+        last[1] = claims;
+        last[2] = verdicts;
+        last[3] = cpuNanos;
+    }
+
+    private void summary(long elapsedMillis) {
+        double seconds = elapsedMillis / 1000.0;
+        long claims = journal.count(Journal.Event.CLAIM);
+        long verdicts = journal.count(Journal.Event.VERDICT);
+        long points = journal.points.sum();
+        System.out.println("bots: " + config.players + ", games: " + games + ", duration: " + elapsedMillis + " ms");
+        System.out.printf("key presses: %d accepted, %d rejected%n", journal.count(Journal.Event.KEY_PRESS), pressesRejected.sum());
+        System.out.printf("claims: %d (%.1f/s), verdicts: %d (%.1f/s), points: %d, penalties: %d, stale: %d%n",
+                claims, claims / seconds, verdicts, verdicts / seconds, points, verdicts - points, staleClaims());
+        System.out.printf("claim queue depth: avg %.2f, max %d%n", depthSamples == 0 ? 0.0 : (double) depthSum / depthSamples, depthMax);
+        System.out.printf("dealer cpu time: %d ms (%.1f%% of the duration)%n",
+                dealerCpuNanos / NANOS_PER_MILLI, 100.0 * dealerCpuNanos / (elapsedMillis * NANOS_PER_MILLI));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Logger logger = Logger.getLogger("LoadGenerator");
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties(args.length > 0 ? args[0] : "config.properties", logger);
+        int bots = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        double pressRate = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+        long thinkMillis = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+        double accuracy = args.length > 4 ? Double.parseDouble(args[4]) : 0.5;
+        long durationSeconds = args.length > 5 ? Long.parseLong(args[5]) : 30;
+
+        properties.put("LogLevel", Level.OFF.getName());
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(bots));
+        properties.put("Hints", "False");
+        Config config = new Config(logger, properties);
+
+        new LoadGenerator(logger, config, pressRate, thinkMillis, accuracy).run(durationSeconds * 1000);
+    }
+}
@@ -0,0 +1,68 @@
+package bguspl.set;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats log records with a java.util.Formatter format string, whose arguments are the time of the record, its level
+ * and its message.
+ * Messages may be parameterised: {0}, {1}, ... are replaced with the parameters of the record (as by String.valueOf,
+ * so numbers are written plainly). The message is only built here, so a record that is not logged costs nothing.
+ */
+public class LogFormatter extends Formatter {
+
+    private final String format;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /**
+     * @param format - the format string, e.g. "[%1$tT.%1$tL] [%2$-7s] %3$s%n".
+     */
+    public LogFormatter(String format) {
+        this.format = format;
+    }
+
+    @Override
+    public String format(LogRecord record) {
+        return String.format(format, ZonedDateTime.ofInstant(record.getInstant(), zone),
+                record.getLevel().getLocalizedName(), formatMessage(record));
+    }
+
+    @Override
+    public String formatMessage(LogRecord record) {
+        String message = record.getMessage();
+        Object[] parameters = record.getParameters();
+        if (message == null || parameters == null || parameters.length == 0) return message;
+
+        StringBuilder text = new StringBuilder(message.length() + 16 * parameters.length);
+        int from = 0;
+        for (int open = message.indexOf('{'); open >= 0; open = message.indexOf('{', from)) {
+            int close = message.indexOf('}', open);
+            if (close < 0) break;
+            int parameter = parameterIndex(message, open + 1, close);
+            if (parameter < 0 || parameter >= parameters.length) {
+                text.append(message, from, open + 1);
+                from = open + 1;
+                continue;
+            }
+            text.append(message, from, open).append(parameters[parameter]);
+            from = close + 1;
+        }
+        return text.append(message, from, message.length()).toString();
+    }
+
+    /**
+     * @return - the number between begin and end in the message, or -1 if it is not a number.
+     */
+    private static int parameterIndex(String message, int begin, int end) {
+        if (begin == end) return -1;
+        int index = 0;
+        for (int i = begin; i < end; i++) {
+            char digit = message.charAt(i);
+            if (digit < '0' || digit > '9') return -1;
+            index = index * 10 + (digit - '0');
+        }
+        return index;
+    }
+}
@@ -4,12 +4,14 @@ import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Table;
 
+import javax.management.JMException;
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.logging.*;
 
 /**
@@ -23,6 +25,11 @@ public class Main {
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
+    /**
+     * The number of log records that may wait to be written before new ones are dropped.
+     */
+    private static final int LOG_BUFFER_SIZE = 8192;
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
@@ -45,19 +52,49 @@ public class Main {
         Config config = new Config(logger, "config.properties");
         Util util = new UtilImpl(config);
 
+        Clock clock = config.virtualTime ? new VirtualClock() : new SystemClock();
         Player[] players = new Player[config.players];
         UserInterface ui = null;
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
+            ui = new UserInterfaceSwing(logger, config, util, clock, players);
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
         }
+        if (config.remotePort > 0) try {
+            RemotePlayerServer server = new RemotePlayerServer(logger, config, players, new InetSocketAddress(config.remotePort), clock);
+            server.start();
+            ui = UserInterface.both(ui, server);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.severe("cannot listen for remote players on port " + config.remotePort + ": " + e.getMessage());
+        }
         ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        Journal journal = Journal.NONE;
+        if (!config.journalFile.isEmpty()) try {
+            journal = new BinaryJournal(Paths.get(config.journalFile), config);
+        } catch (IOException e) {
+            logger.severe("cannot create journal file " + config.journalFile + ": " + e.getMessage());
+        }
+        if (!config.eventJournalDirectory.isEmpty()) try {
+            journal = Journal.both(journal, new MappedJournal(Paths.get(config.eventJournalDirectory), config.eventJournalSegmentBytes));
+        } catch (IOException e) {
+            logger.severe("cannot create event journal in " + config.eventJournalDirectory + ": " + e.getMessage());
+        }
+        Metrics metrics = new Metrics();
+        try {
+            metrics.register("game");
+        } catch (JMException e) {
+            logger.severe("cannot publish the game metrics: " + e.getMessage());
+        }
+        Env env = new Env(logger, config, ui, util, clock, journal, metrics);
+        try {
+            env.settings.register("game");
+        } catch (JMException e) {
+            logger.severe("cannot publish the game settings: " + e.getMessage());
+        }
 
         // create the game entities
         Table table = new Table(env);
@@ -73,13 +110,17 @@ public class Main {
         try {
             // shutdown stuff
             dealerThread.joinWithLog();
-            if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+            if (!xButtonPressed && config.endGamePauseMillies > 0) env.clock.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            env.journal.close();
+            if (logger.isLoggable(Level.INFO)) logger.info("metrics: " + metrics.snapshot());
+            metrics.unregister();
+            env.settings.unregister();
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
@@ -99,7 +140,7 @@ public class Main {
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
-        logger.addHandler(handler);
+        logger.addHandler(new AsyncLogHandler(handler, LOG_BUFFER_SIZE));
         setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
 
         return logger;
@@ -107,15 +148,8 @@ public class Main {
 
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
-        if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
-            // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
-            @Override
-            public synchronized String format(LogRecord lr) {
-                return String.format(format, new Date(lr.getMillis()),
-                        lr.getLevel().getLocalizedName(), lr.getMessage()
-                );
-            }
-        }));
+        // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+        if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new LogFormatter(format)));
         logger.setLevel(level);
     }
 }
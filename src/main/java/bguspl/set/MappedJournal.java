@@ -0,0 +1,226 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The implementation of the Journal interface as memory-mapped segment files, for analysing games.
+ * Each event is a fixed-size record, written straight into the mapped memory: a writer reserves the next record with a
+ * single atomic increment and then fills it in, so threads never wait for each other (or for the disk). When a
+ * segment is full, the journal rolls over to the next one (journal-000000.seg, journal-000001.seg, ...).
+ * A record is complete once its event field is set, which is written last.
+ */
+public class MappedJournal implements Journal {
+
+    /**
+     * The segment header: magic, version, record size, segment number (padded to a record boundary).
+     */
+    private static final int MAGIC = 0x5345544D; // "SETM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * A record: time (8), board version (8), card (4), player (2), slot (2), event ordinal + 1 (4), unused (4).
+     */
+    public static final int RECORD_SIZE = 32;
+    private static final int TIME = 0;
+    private static final int BOARD_VERSION = 8;
+    private static final int CARD = 16;
+    private static final int PLAYER = 20;
+    private static final int SLOT = 22;
+    private static final int EVENT = 24;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+    private final int recordsPerSegment;
+
+    /**
+     * The number of records reserved so far.
+     */
+    private final AtomicLong reserved = new AtomicLong();
+
+    /**
+     * The segment most writers write to, and all the mapped segments by number.
+     */
+    private final AtomicReference<Segment> current = new AtomicReference<>();
+    private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    private static class Segment {
+        final long number;
+        final MappedByteBuffer buffer;
+
+        Segment(long number, MappedByteBuffer buffer) {
+            this.number = number;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * @param directory    - the directory of the segment files (created if needed, existing segments are replaced).
+     * @param segmentBytes - the size of each segment file.
+     * @throws IOException - if the first segment cannot be created.
+     */
+    public MappedJournal(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        recordsPerSegment = (int) Math.min(Integer.MAX_VALUE / RECORD_SIZE - 1,
+                Math.max(1, (segmentBytes - HEADER_SIZE) / RECORD_SIZE));
+        Files.createDirectories(directory);
+        for (Path old : segmentFiles(directory)) Files.delete(old);
+        try {
+            current.set(segment(0));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String segmentName(long number) {
+        return String.format("journal-%06d.seg", number);
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("journal-\\d+\\.seg")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return - the segment with the given number, mapping it first if needed.
+     */
+    private Segment segment(long number) {
+        Segment segment = current.get();
+        if (segment != null && segment.number == number) return segment;
+        return segments.computeIfAbsent(number, n -> {
+            long size = HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE;
+            try (FileChannel channel = FileChannel.open(directory.resolve(segmentName(n)),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putLong(16, n);
+                return new Segment(n, buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void record(Event event, int player, int slot, int card, long time) {
+        record(event, player, slot, card, -1, time);
+    }
+
+    @Override
+    public void record(Event event, int player, int slot, int card, long boardVersion, long time) {
+        if (closed) return;
+        long sequence = reserved.getAndIncrement();
+        long number = sequence / recordsPerSegment;
+        int index = (int) (sequence % recordsPerSegment);
+
+        Segment segment = current.get();
+        if (segment.number != number) segment = rollOver(number);
+        if (index == recordsPerSegment / 2) segment(number + 1); // map the next segment ahead of time
+
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        buffer.putLong(offset + TIME, time);
+        buffer.putLong(offset + BOARD_VERSION, boardVersion);
+        buffer.putInt(offset + CARD, card);
+        buffer.putShort(offset + PLAYER, (short) player);
+        buffer.putShort(offset + SLOT, (short) slot);
+        INT.setRelease(buffer, offset + EVENT, event.ordinal() + 1);
+    }
+
+    /**
+     * Moves the current segment forward to the given one (unless another writer already moved it further), and
+     * releases the segments before the previous one.
+     */
+    private Segment rollOver(long number) {
+        Segment segment = segment(number);
+        Segment old = current.get();
+        while (old.number < number && !current.compareAndSet(old, segment))
+            old = current.get();
+        segments.keySet().removeIf(n -> n < number - 1);
+        return segment;
+    }
+
+    /**
+     * Writes the mapped segments to the disk. Events recorded after closing are ignored.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Segment segment : segments.values()) segment.buffer.force();
+        current.get().buffer.force();
+    }
+
+    /**
+     * A single journal record.
+     */
+    public static class Record {
+        /**
+         * The position of the record in the journal (records are numbered in the order they were reserved).
+         */
+        public final long sequence;
+        public final Event event;
+        public final int player;
+        public final int slot;
+        public final int card;
+        public final long boardVersion;
+        public final long time;
+
+        private Record(long sequence, MappedByteBuffer buffer, int offset, int event) {
+            this.sequence = sequence;
+            this.event = Event.values()[event - 1];
+            player = buffer.getShort(offset + PLAYER);
+            slot = buffer.getShort(offset + SLOT);
+            card = buffer.getInt(offset + CARD);
+            boardVersion = buffer.getLong(offset + BOARD_VERSION);
+            time = buffer.getLong(offset + TIME);
+        }
+    }
+
+    /**
+     * Reads the journal segments of a directory, one segment at a time.
+     *
+     * @param directory - the directory of the segment files.
+     * @param consumer  - called for each complete record, in sequence order.
+     * @throws IOException - if a segment cannot be read.
+     */
+    public static void read(Path directory, Consumer<Record> consumer) throws IOException {
+        for (Path file : segmentFiles(directory)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+                    throw new IOException(file + " is not a journal segment");
+                if (buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE)
+                    throw new IOException("unsupported journal segment version " + buffer.getInt(4));
+                long number = buffer.getLong(16);
+                long records = (buffer.limit() - HEADER_SIZE) / RECORD_SIZE;
+                for (int index = 0; index < records; index++) {
+                    int offset = HEADER_SIZE + index * RECORD_SIZE;
+                    int event = (int) INT.getAcquire(buffer, offset + EVENT);
+                    if (event > 0 && event <= Event.values().length)
+                        consumer.accept(new Record(number * records + index, buffer, offset, event));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package bguspl.set;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A registry of the game metrics: counters, gauges and histograms, looked up by name.
+ * Updating a metric is a few uncontended atomic operations, and nothing is computed until somebody reads the metrics,
+ * e.g. over JMX after calling register (the registry is a platform MBean with an attribute per value).
+ */
+public class Metrics {
+
+    /**
+     * A count of events, or a sum of amounts.
+     */
+    public static class Counter {
+
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A distribution of non-negative values in power of 2 buckets (the percentiles are accurate up to a factor of 2).
+     */
+    public static class Histogram {
+
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets[value == 0 ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(value)].increment();
+            sum.add(value);
+            if (value > max.get()) max.accumulateAndGet(value, Math::max);
+        }
+
+        public long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) count += bucket.sum();
+            return count;
+        }
+
+        public double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) sum.sum() / count;
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * @param percentile - between 0 and 100.
+         * @return - an upper bound of the percentile (the top of its bucket, at most the maximum).
+         */
+        public long percentile(double percentile) {
+            long[] counts = new long[buckets.length];
+            long count = 0;
+            for (int i = 0; i < counts.length; i++) count += counts[i] = buckets[i].sum();
+            long rank = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0)
+                    return Math.min(max(), (2L << i) - 1);
+            }
+            return max();
+        }
+    }
+
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    /**
+     * The metrics by name (counters, histograms and gauges).
+     */
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    private ObjectName objectName;
+
+    /**
+     * @param name - the name of the counter.
+     * @return - the counter with that name (created on first use).
+     */
+    public Counter counter(String name) {
+        return (Counter) metrics.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * @param name - the name of the histogram.
+     * @return - the histogram with that name (created on first use).
+     */
+    public Histogram histogram(String name) {
+        return (Histogram) metrics.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Adds (or replaces) a value that is computed when it is read.
+     *
+     * @param name  - the name of the gauge.
+     * @param gauge - computes the value.
+     */
+    public void gauge(String name, LongSupplier gauge) {
+        metrics.put(name, gauge);
+    }
+
+    /**
+     * @return - the current values of all the metrics by name (histograms are expanded to several values).
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new ConcurrentSkipListMap<>();
+        metrics.forEach((name, metric) -> {
+            if (metric instanceof Counter) values.put(name, ((Counter) metric).get());
+            else if (metric instanceof LongSupplier) values.put(name, ((LongSupplier) metric).getAsLong());
+            else if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                values.put(name + ".count", histogram.count());
+                values.put(name + ".mean", histogram.mean());
+                for (double percentile : PERCENTILES)
+                    values.put(name + ".p" + (int) percentile, histogram.percentile(percentile));
+                values.put(name + ".max", histogram.max());
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Publishes the metrics as a platform MBean named bguspl.set:type=Metrics,name=[name].
+     *
+     * @param name - the name of the game.
+     * @throws JMException - if the MBean cannot be registered (e.g. the name is taken).
+     */
+    public synchronized void register(String name) throws JMException {
+        objectName = ObjectName.getInstance("bguspl.set:type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), objectName);
+    }
+
+    /**
+     * Removes the MBean published by register, if any.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException ignored) {
+        }
+        objectName = null;
+    }
+
+    /**
+     * The read-only MBean view of the metrics: an attribute per value of snapshot().
+     */
+    private class MBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = snapshot().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes)
+                if (values.containsKey(attribute)) list.add(new Attribute(attribute, values.get(attribute)));
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            snapshot().forEach((name, value) -> attributes.add(new MBeanAttributeInfo(name, value.getClass().getName(),
+                    name, true, false, false)));
+            return new MBeanInfo(Metrics.class.getName(), "Set game metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A TCP server for remote players and spectators, which shows the game to its clients as a user interface.
+ * A single I/O thread handles all the connections with a selector. A client takes the first free human player seat when
+ * it connects (or watches the game if all the seats are taken), and its KEY messages are passed straight to
+ * Player.keyPressed. The user interface calls only update a BoardState; once a tick, the I/O thread encodes what
+ * changed as a single frame into a pooled buffer and writes that same buffer to every connection (see WireProtocol).
+ * A joining client gets a snapshot first, and so does a client that falls too far behind (instead of the frames it
+ * missed).
+ */
+public class RemotePlayerServer implements UserInterface {
+
+    /**
+     * The number of frames that may wait to be sent to a client before it is sent a snapshot instead.
+     */
+    private static final int MAX_PENDING_FRAMES = 64;
+    private static final int MAX_FREE_BUFFERS = 256;
+    private static final int INPUT_BUFFER_BYTES = 256;
+    private static final int BACKLOG = 1024;
+
+    /**
+     * The size of a hello message (an upper bound).
+     */
+    private static final int HELLO_BYTES = 16;
+
+    /**
+     * How long dispose waits for the I/O thread to send the last frame.
+     */
+    private static final long DISPOSE_TIMEOUT_MILLIS = 1000;
+
+    private final Logger logger;
+    private final int tableSize;
+    private final Player[] players;
+    private final long tickNanos;
+
+    private final BoardState state;
+    private final BufferPool pool;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private volatile boolean closing = false;
+    private Thread ioThread = null;
+
+    /**
+     * The connections (only used by the I/O thread), and the connection in each human player seat (null if free).
+     */
+    private final List<Connection> connections = new ArrayList<>();
+    private final Connection[] seats;
+
+    private static class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final int seat;
+        final ByteBuffer input = ByteBuffer.allocateDirect(INPUT_BUFFER_BYTES);
+
+        /**
+         * The buffers waiting to be sent, and the part of the first one that was not sent yet (null if none of it was
+         * sent).
+         */
+        final ArrayDeque<BufferPool.Buffer> pending = new ArrayDeque<>();
+        ByteBuffer sending = null;
+        boolean closed = false;
+
+        Connection(SocketChannel channel, Selector selector, int seat) throws IOException {
+            this.channel = channel;
+            this.seat = seat;
+            this.key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+    }
+
+    /**
+     * Starts listening (the connections are handled once start is called).
+     *
+     * @param logger  - the logger.
+     * @param config  - the game configuration.
+     * @param players - the players (the first config.humanPlayers are the seats of the remote players).
+     * @param address - the address to listen on.
+     * @param clock   - the game clock (the countdown sent to the clients is measured on it).
+     * @throws IOException              - if the server cannot listen on the address.
+     * @throws IllegalArgumentException - if a snapshot of the game may not fit in a message.
+     */
+    public RemotePlayerServer(Logger logger, Config config, Player[] players, InetSocketAddress address, Clock clock) throws IOException {
+        long snapshotBytes = maxSnapshotBytes(config.tableSize, config.players);
+        if (snapshotBytes > WireProtocol.MAX_MESSAGE_BYTES)
+            throw new IllegalArgumentException("a snapshot of a game of " + config.players + " players and "
+                    + config.tableSize + " slots may take " + snapshotBytes + " bytes, more than a message can hold");
+        this.logger = logger;
+        this.tableSize = config.tableSize;
+        this.players = players;
+        this.tickNanos = TimeUnit.SECONDS.toNanos(1) / config.remoteTicksPerSecond;
+        this.state = new BoardState(config.rows, config.columns, config.players, clock);
+        this.pool = new BufferPool((int) (HELLO_BYTES + snapshotBytes), MAX_FREE_BUFFERS);
+        this.seats = new Connection[Math.min(config.humanPlayers, players.length)];
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(address, BACKLOG);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return - the size of a snapshot of a game, which is also the size of its largest frame (an upper bound, with
+     * every number taking 5 bytes, or 10 for a long).
+     */
+    static long maxSnapshotBytes(int tableSize, int players) {
+        long slotBytes = 3 * 5 + 5L * players;
+        long playerBytes = 2 * 5 + 10;
+        return 48 + tableSize * slotBytes + players * playerBytes + 5L * players;
+    }
+
+    /**
+     * @return - the port the server listens on.
+     */
+    public int port() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * @return - the state the clients are shown.
+     */
+    public BoardState state() {
+        return state;
+    }
+
+    /**
+     * Starts the I/O thread.
+     */
+    public synchronized void start() {
+        if (ioThread != null) return;
+        ioThread = new Thread(this::run, "remote-players");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * The main loop of the I/O thread.
+     */
+    private void run() {
+        try {
+            long nextTick = System.nanoTime() + tickNanos;
+            while (!closing) {
+                long now = System.nanoTime();
+                if (now - nextTick >= 0) {
+                    tick();
+                    nextTick = Math.max(nextTick + tickNanos, now + 1);
+                    continue;
+                }
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextTick - now)));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) read(connection);
+                        if (key.isValid() && key.isWritable()) flush(connection);
+                    }
+                }
+                connections.removeIf(connection -> connection.closed);
+            }
+            tick();
+        } catch (IOException | RuntimeException e) {
+            logger.severe("remote player server failed: " + e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Sends what changed since the last tick to all the connections, as one frame.
+     */
+    private void tick() {
+        BufferPool.Buffer frame = pool.acquire();
+        if (state.writeFrame(frame.buffer)) {
+            frame.buffer.flip();
+            for (Connection connection : connections)
+                if (!connection.closed) send(connection, frame);
+        }
+        frame.release();
+    }
+
+    /**
+     * Queues a buffer for a connection and sends what the socket takes. A connection that has too many buffers
+     * waiting gets a snapshot instead of them.
+     */
+    private void send(Connection connection, BufferPool.Buffer buffer) {
+        if (connection.pending.size() >= MAX_PENDING_FRAMES) {
+            BufferPool.Buffer partlySent = connection.sending != null ? connection.pending.poll() : null;
+            for (BufferPool.Buffer pending : connection.pending) pending.release();
+            connection.pending.clear();
+            if (partlySent != null) connection.pending.add(partlySent); // the client must get whole messages
+            BufferPool.Buffer snapshot = pool.acquire();
+            state.writeSnapshot(snapshot.buffer);
+            snapshot.buffer.flip();
+            connection.pending.add(snapshot);
+        } else
+            connection.pending.add(buffer.retain());
+        flush(connection);
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        int seat = -1;
+        for (int i = 0; i < seats.length && seat < 0; i++)
+            if (seats[i] == null) seat = i;
+
+        Connection connection;
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            connection = new Connection(channel, selector, seat);
+        } catch (IOException e) {
+            channel.close();
+            return;
+        }
+        if (seat >= 0) seats[seat] = connection;
+        connections.add(connection);
+        if (logger.isLoggable(Level.INFO))
+            logger.log(Level.INFO, "remote client {0} connected as {1}",
+                    new Object[]{channel.socket().getRemoteSocketAddress(), seat >= 0 ? "player " + (seat + 1) : "a spectator"});
+
+        BufferPool.Buffer hello = pool.acquire();
+        WireProtocol.writeHello(hello.buffer, seat);
+        state.writeSnapshot(hello.buffer);
+        hello.buffer.flip();
+        send(connection, hello);
+        hello.release();
+    }
+
+    /**
+     * Passes the key presses of a connection to its player.
+     */
+    private void read(Connection connection) {
+        ByteBuffer input = connection.input;
+        int read;
+        try {
+            read = connection.channel.read(input);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            drop(connection, "disconnected");
+            return;
+        }
+        input.flip();
+        Player player = connection.seat >= 0 ? players[connection.seat] : null;
+        try {
+            for (ByteBuffer message = WireProtocol.next(input); message != null; message = WireProtocol.next(input)) {
+                if (message.get() != WireProtocol.KEY) continue; // a newer client may send other messages
+                int slot = WireProtocol.getVarint(message);
+                if (player != null && slot >= 0 && slot < tableSize)
+                    player.keyPressed(slot);
+            }
+        } catch (IOException | BufferUnderflowException e) {
+            drop(connection, "sent an invalid message");
+            return;
+        }
+        input.compact();
+        if (!input.hasRemaining()) drop(connection, "sent a message that is too long");
+    }
+
+    /**
+     * Writes the waiting buffers of a connection as far as the socket takes them, and waits for the socket to be
+     * writable if anything is left.
+     */
+    private void flush(Connection connection) {
+        try {
+            while (!connection.pending.isEmpty()) {
+                if (connection.sending == null) connection.sending = connection.pending.peek().buffer.duplicate();
+                connection.channel.write(connection.sending);
+                if (connection.sending.hasRemaining()) break;
+                connection.pending.poll().release();
+                connection.sending = null;
+            }
+        } catch (IOException e) {
+            drop(connection, "disconnected");
+            return;
+        }
+        connection.key.interestOps(connection.pending.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void drop(Connection connection, String reason) {
+        if (connection.closed) return;
+        close(connection);
+        if (connection.seat >= 0) seats[connection.seat] = null;
+        if (logger.isLoggable(Level.INFO))
+            logger.log(Level.INFO, "remote client {0} {1}",
+                    new Object[]{connection.seat >= 0 ? "of player " + (connection.seat + 1) : "spectator", reason});
+    }
+
+    private void close(Connection connection) {
+        connection.closed = true;
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+        }
+        for (BufferPool.Buffer pending : connection.pending) pending.release();
+        connection.pending.clear();
+        connection.sending = null;
+    }
+
+    private void closeAll() {
+        for (Connection connection : connections)
+            if (!connection.closed) close(connection);
+        connections.clear();
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        state.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        state.removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        state.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        state.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        state.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        state.removeToken(player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        state.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void startCountdown(long millies, long warnMillies) {
+        state.startCountdown(millies, warnMillies);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        state.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        state.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        state.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        state.announceWinner(players);
+    }
+
+    /**
+     * Sends the last changes (as much as the sockets take right away) and closes all the connections.
+     */
+    @Override
+    public void dispose() {
+        Thread thread;
+        synchronized (this) {
+            closing = true;
+            thread = ioThread;
+        }
+        if (thread == null) {
+            closeAll();
+            return;
+        }
+        selector.wakeup();
+        try {
+            thread.join(DISPOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
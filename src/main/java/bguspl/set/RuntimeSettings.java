@@ -0,0 +1,275 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * The game parameters that may be changed while the game runs (e.g. over JMX after calling register), starting from
+ * the values in the configuration.
+ * The values are kept in an immutable, versioned snapshot that is replaced as a whole on every change, so a reader
+ * that takes a snapshot sees a consistent set of values without any locking. Readers should take a new snapshot for
+ * every operation (it is a single volatile read), so changes take effect immediately; a new turn timeout takes effect
+ * on the next turn.
+ */
+public class RuntimeSettings {
+
+    /**
+     * A consistent set of values of the runtime settings.
+     */
+    public static final class Snapshot {
+
+        /**
+         * Incremented on every change.
+         */
+        public final long version;
+        public final long tableDelayMillis;
+        public final long pointFreezeMillis;
+        public final long penaltyFreezeMillis;
+        public final long turnTimeoutMillis;
+        public final long turnTimeoutWarningMillis;
+        public final boolean hints;
+
+        private Snapshot(long version, long tableDelayMillis, long pointFreezeMillis, long penaltyFreezeMillis,
+                         long turnTimeoutMillis, long turnTimeoutWarningMillis, boolean hints) {
+            this.version = version;
+            this.tableDelayMillis = tableDelayMillis;
+            this.pointFreezeMillis = pointFreezeMillis;
+            this.penaltyFreezeMillis = penaltyFreezeMillis;
+            this.turnTimeoutMillis = turnTimeoutMillis;
+            this.turnTimeoutWarningMillis = turnTimeoutWarningMillis;
+            this.hints = hints;
+        }
+
+        Snapshot withTableDelayMillis(long millis) {
+            return new Snapshot(version + 1, millis, pointFreezeMillis, penaltyFreezeMillis, turnTimeoutMillis,
+                    turnTimeoutWarningMillis, hints);
+        }
+
+        Snapshot withPointFreezeMillis(long millis) {
+            return new Snapshot(version + 1, tableDelayMillis, millis, penaltyFreezeMillis, turnTimeoutMillis,
+                    turnTimeoutWarningMillis, hints);
+        }
+
+        Snapshot withPenaltyFreezeMillis(long millis) {
+            return new Snapshot(version + 1, tableDelayMillis, pointFreezeMillis, millis, turnTimeoutMillis,
+                    turnTimeoutWarningMillis, hints);
+        }
+
+        Snapshot withTurnTimeoutMillis(long millis) {
+            return new Snapshot(version + 1, tableDelayMillis, pointFreezeMillis, penaltyFreezeMillis, millis,
+                    turnTimeoutWarningMillis, hints);
+        }
+
+        Snapshot withTurnTimeoutWarningMillis(long millis) {
+            return new Snapshot(version + 1, tableDelayMillis, pointFreezeMillis, penaltyFreezeMillis,
+                    turnTimeoutMillis, millis, hints);
+        }
+
+        Snapshot withHints(boolean hints) {
+            return new Snapshot(version + 1, tableDelayMillis, pointFreezeMillis, penaltyFreezeMillis,
+                    turnTimeoutMillis, turnTimeoutWarningMillis, hints);
+        }
+    }
+
+    /**
+     * The management interface of the runtime settings.
+     */
+    public interface MBean {
+        long getVersion();
+
+        long getTableDelayMillis();
+
+        void setTableDelayMillis(long millis);
+
+        long getPointFreezeMillis();
+
+        void setPointFreezeMillis(long millis);
+
+        long getPenaltyFreezeMillis();
+
+        void setPenaltyFreezeMillis(long millis);
+
+        long getTurnTimeoutMillis();
+
+        void setTurnTimeoutMillis(long millis);
+
+        long getTurnTimeoutWarningMillis();
+
+        void setTurnTimeoutWarningMillis(long millis);
+
+        boolean isHints();
+
+        void setHints(boolean hints);
+    }
+
+    private final AtomicReference<Snapshot> current;
+
+    private ObjectName objectName;
+
+    /**
+     * @param config - the initial values.
+     */
+    public RuntimeSettings(Config config) {
+        current = new AtomicReference<>(new Snapshot(0, config.tableDelayMillis, config.pointFreezeMillis,
+                config.penaltyFreezeMillis, config.turnTimeoutMillis, config.turnTimeoutWarningMillis, config.hints));
+    }
+
+    /**
+     * @return - the current values.
+     */
+    public Snapshot get() {
+        return current.get();
+    }
+
+    /**
+     * Replaces the current values (retrying if another thread changed them meanwhile).
+     *
+     * @param change - computes the new values from the current ones.
+     * @return - the new values.
+     */
+    private Snapshot update(UnaryOperator<Snapshot> change) {
+        return current.updateAndGet(change);
+    }
+
+    private static long requireNonNegative(String name, long millis) {
+        if (millis < 0) throw new IllegalArgumentException(name + " must not be negative: " + millis);
+        return millis;
+    }
+
+    public void setTableDelayMillis(long millis) {
+        requireNonNegative("table delay", millis);
+        update(settings -> settings.withTableDelayMillis(millis));
+    }
+
+    public void setPointFreezeMillis(long millis) {
+        requireNonNegative("point freeze", millis);
+        update(settings -> settings.withPointFreezeMillis(millis));
+    }
+
+    public void setPenaltyFreezeMillis(long millis) {
+        requireNonNegative("penalty freeze", millis);
+        update(settings -> settings.withPenaltyFreezeMillis(millis));
+    }
+
+    /**
+     * @param millis - the new turn timeout. The kind of timer cannot change while the game runs: a countdown
+     *               (positive timeout) stays positive, and the elapsed time (zero) or no timer (negative) cannot be
+     *               changed.
+     */
+    public void setTurnTimeoutMillis(long millis) {
+        update(settings -> {
+            if (Long.signum(millis) != Long.signum(settings.turnTimeoutMillis))
+                throw new IllegalArgumentException("cannot change the kind of timer: " + settings.turnTimeoutMillis
+                        + " to " + millis);
+            return settings.withTurnTimeoutMillis(millis);
+        });
+    }
+
+    public void setTurnTimeoutWarningMillis(long millis) {
+        requireNonNegative("turn timeout warning", millis);
+        update(settings -> settings.withTurnTimeoutWarningMillis(millis));
+    }
+
+    public void setHints(boolean hints) {
+        update(settings -> settings.withHints(hints));
+    }
+
+    /**
+     * Publishes the settings as a platform MBean named bguspl.set:type=Settings,name=[name].
+     *
+     * @param name - the name of the game.
+     * @throws JMException - if the MBean cannot be registered (e.g. the name is taken).
+     */
+    public synchronized void register(String name) throws JMException {
+        objectName = ObjectName.getInstance("bguspl.set:type=Settings,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(new Management(), MBean.class),
+                objectName);
+    }
+
+    /**
+     * Removes the MBean published by register, if any.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException ignored) {
+        }
+        objectName = null;
+    }
+
+    /**
+     * The MBean view of the settings (every getter reads the current snapshot).
+     */
+    private class Management implements MBean {
+
+        @Override
+        public long getVersion() {
+            return get().version;
+        }
+
+        @Override
+        public long getTableDelayMillis() {
+            return get().tableDelayMillis;
+        }
+
+        @Override
+        public void setTableDelayMillis(long millis) {
+            RuntimeSettings.this.setTableDelayMillis(millis);
+        }
+
+        @Override
+        public long getPointFreezeMillis() {
+            return get().pointFreezeMillis;
+        }
+
+        @Override
+        public void setPointFreezeMillis(long millis) {
+            RuntimeSettings.this.setPointFreezeMillis(millis);
+        }
+
+        @Override
+        public long getPenaltyFreezeMillis() {
+            return get().penaltyFreezeMillis;
+        }
+
+        @Override
+        public void setPenaltyFreezeMillis(long millis) {
+            RuntimeSettings.this.setPenaltyFreezeMillis(millis);
+        }
+
+        @Override
+        public long getTurnTimeoutMillis() {
+            return get().turnTimeoutMillis;
+        }
+
+        @Override
+        public void setTurnTimeoutMillis(long millis) {
+            RuntimeSettings.this.setTurnTimeoutMillis(millis);
+        }
+
+        @Override
+        public long getTurnTimeoutWarningMillis() {
+            return get().turnTimeoutWarningMillis;
+        }
+
+        @Override
+        public void setTurnTimeoutWarningMillis(long millis) {
+            RuntimeSettings.this.setTurnTimeoutWarningMillis(millis);
+        }
+
+        @Override
+        public boolean isHints() {
+            return get().hints;
+        }
+
+        @Override
+        public void setHints(boolean hints) {
+            RuntimeSettings.this.setHints(hints);
+        }
+    }
+}
@@ -50,6 +50,16 @@ public interface UserInterface {
      */
     void setCountdown(long millies, boolean warn);
 
+    /**
+     * Start a countdown from the specified number of milliseconds, which the display keeps updating by itself until it
+     * reaches 0. Displays that cannot count down by themselves show the starting time.
+     * @param millies     - the milliseconds to count down from.
+     * @param warnMillies - the countdown is shown as in setCountdown with warn = true once fewer milliseconds remain.
+     */
+    default void startCountdown(long millies, long warnMillies) {
+        setCountdown(millies, millies < warnMillies);
+    }
+
     /**
      * Set the elapsed time to the specified number of milliseconds.
      * @param millies - the milliseconds to be shown.
@@ -84,4 +94,96 @@ public interface UserInterface {
      * Programmatically closes the window.
      */
     void dispose();
+
+    /**
+     * @param first  - a user interface (or null for none).
+     * @param second - another user interface (or null for none).
+     * @return - a user interface that shows everything on both.
+     */
+    static UserInterface both(UserInterface first, UserInterface second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        return new UserInterface() {
+            @Override
+            public void placeCard(int card, int slot) {
+                first.placeCard(card, slot);
+                second.placeCard(card, slot);
+            }
+
+            @Override
+            public void removeCard(int slot) {
+                first.removeCard(slot);
+                second.removeCard(slot);
+            }
+
+            @Override
+            public void placeToken(int player, int slot) {
+                first.placeToken(player, slot);
+                second.placeToken(player, slot);
+            }
+
+            @Override
+            public void removeTokens() {
+                first.removeTokens();
+                second.removeTokens();
+            }
+
+            @Override
+            public void removeTokens(int slot) {
+                first.removeTokens(slot);
+                second.removeTokens(slot);
+            }
+
+            @Override
+            public void removeToken(int player, int slot) {
+                first.removeToken(player, slot);
+                second.removeToken(player, slot);
+            }
+
+            @Override
+            public void setCountdown(long millies, boolean warn) {
+                first.setCountdown(millies, warn);
+                second.setCountdown(millies, warn);
+            }
+
+            @Override
+            public void startCountdown(long millies, long warnMillies) {
+                first.startCountdown(millies, warnMillies);
+                second.startCountdown(millies, warnMillies);
+            }
+
+            @Override
+            public void setElapsed(long millies) {
+                first.setElapsed(millies);
+                second.setElapsed(millies);
+            }
+
+            @Override
+            public void setFreeze(int player, long millies) {
+                first.setFreeze(player, millies);
+                second.setFreeze(player, millies);
+            }
+
+            @Override
+            public void setScore(int player, int score) {
+                first.setScore(player, score);
+                second.setScore(player, score);
+            }
+
+            @Override
+            public void announceWinner(int[] players) {
+                first.announceWinner(players);
+                second.announceWinner(players);
+            }
+
+            @Override
+            public void dispose() {
+                try {
+                    first.dispose();
+                } finally {
+                    second.dispose();
+                }
+            }
+        };
+    }
 }
@@ -2,11 +2,17 @@ package bguspl.set;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 public class UserInterfaceDecorator implements UserInterface {
 
+    /**
+     * The level of the log records of the user interface calls.
+     */
+    private static final Level TRACE = Level.FINE;
+
     private final Logger logger;
     private final Util util;
     private final UserInterface ui;
@@ -19,44 +25,59 @@ public class UserInterfaceDecorator implements UserInterface {
         if (ui == null) System.out.println("running without a user interface. Check logs.");
     }
 
+    /**
+     * Logs a user interface call. The message is built (by the log formatter) only if the call is logged at all.
+     */
+    private void trace(String message) {
+        logger.log(TRACE, message);
+    }
+
+    private void trace(String message, long value) {
+        if (logger.isLoggable(TRACE)) logger.log(TRACE, message, value);
+    }
+
+    private void trace(String message, long value0, long value1) {
+        if (logger.isLoggable(TRACE)) logger.log(TRACE, message, new Object[]{value0, value1});
+    }
+
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
+        trace("placing card {0} in slot {1}", card, slot);
         util.spin();
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
+        trace("removing card from slot {0}", slot);
         util.spin();
         if (ui != null) ui.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        trace("player {0} placing token on slot {1}", player + 1, slot);
         util.spin();
         if (ui != null) ui.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
+        trace("removing all tokens");
         util.spin();
         if (ui != null) ui.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
+        trace("removing tokens from slot {0}", slot);
         util.spin();
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        trace("removing player {0} token from slot {1}", player + 1, slot);
         util.spin();
         if (ui != null) ui.removeToken(player, slot);
     }
@@ -64,35 +85,43 @@ public class UserInterfaceDecorator implements UserInterface {
     @Override
     public void setCountdown(long millies, boolean warn) {
         if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
+            trace("updating countdown to {0}", millies);
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
+    @Override
+    public void startCountdown(long millies, long warnMillies) {
+        trace("starting countdown from {0}", millies);
+        if (ui != null) ui.startCountdown(millies, warnMillies);
+    }
+
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
+        trace("updating elapsed time to {0}", millies);
         util.spin();
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        trace("setting player {0} freeze to {1}", player + 1, millies);
         util.spin();
         if (ui != null) ui.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
+        trace("setting player {0} score to {1}", player + 1, score);
         util.spin();
         if (ui != null) ui.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
-        logger.severe("announcing winner(s): " + String.join(", ", winners));
+        if (logger.isLoggable(Level.SEVERE)) {
+            List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
+            logger.severe("announcing winner(s): " + String.join(", ", winners));
+        }
         if (ui != null) ui.announceWinner(players);
     }
 
@@ -2,12 +2,30 @@ package bguspl.set;
 
 import bguspl.set.ex.Player;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -15,6 +33,8 @@ import static java.lang.String.format;
 
 /**
  * Java Swing implementation of the UserInterface interface.
+ * The game threads never touch the Swing components: each call is posted as a command, and the commands are
+ * applied in batches on the event dispatch thread, once per frame.
  */
 public class UserInterfaceSwing extends JFrame implements UserInterface {
 
@@ -23,14 +43,74 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
     private final Config config;
+    private final Logger logger;
+    private final Util util;
+
+    /**
+     * The game clock, which the countdown is measured on.
+     */
+    private final Clock clock;
+
+    /**
+     * Schedules the frames, i.e. the repaints of the table.
+     */
+    private final ScheduledExecutorService frameScheduler;
+
+    /**
+     * True iff a frame is scheduled and did not start yet.
+     */
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+
+    /**
+     * The minimal time between two frames, and the earliest time of the next frame (as in System.nanoTime).
+     */
+    private final long frameNanos;
+    private volatile long nextFrameNanos;
+
+    /**
+     * The time (as in System.nanoTime) of the next frame requested by the countdown.
+     */
+    private volatile long countdownTickNanos = Long.MAX_VALUE;
+
+    /**
+     * The commands posted since the last frame, in order.
+     */
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The latest timer, freeze and score commands. Each of these supersedes the previous command of its kind, so only
+     * the latest one posted since the last frame is applied.
+     */
+    private final AtomicReference<Runnable> timerCommand = new AtomicReference<>();
+    private final AtomicReferenceArray<Runnable> freezeCommands;
+    private final AtomicReferenceArray<Runnable> scoreCommands;
 
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
 
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+        this(logger, config, new UtilImpl(config), players);
+    }
+
+    public UserInterfaceSwing(Logger logger, Config config, Util util, Player[] players) {
+        this(logger, config, util, new SystemClock(), players);
+    }
+
+    public UserInterfaceSwing(Logger logger, Config config, Util util, Clock clock, Player[] players) {
 
         this.config = config;
+        this.util = util;
+        this.clock = clock;
+        this.logger = logger;
+        frameNanos = TimeUnit.SECONDS.toNanos(1) / config.framesPerSecond;
+        frameScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "ui-frames");
+            thread.setDaemon(true);
+            return thread;
+        });
+        freezeCommands = new AtomicReferenceArray<>(config.players);
+        scoreCommands = new AtomicReferenceArray<>(config.players);
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -69,72 +149,297 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         EventQueue.invokeLater(() -> setVisible(true));
     }
 
-    private class TimerPanel extends JPanel {
+    private void post(Runnable command) {
+        commands.add(command);
+        requestFrame();
+    }
 
-        private final JLabel timerField;
+    private void post(AtomicReference<Runnable> latest, Runnable command) {
+        latest.set(command);
+        requestFrame();
+    }
+
+    private void post(AtomicReferenceArray<Runnable> latest, int player, Runnable command) {
+        latest.set(player, command);
+        requestFrame();
+    }
 
-        private String generateTime(long millies, boolean warn) {
-            if (warn)
-                return format("Remaining Time: %.2f", (double) millies / 1000.0f);
-            else
-                return format("Remaining Time: %d", millies / 1000L);
+    /**
+     * Makes sure a frame is scheduled. The frame runs on the event dispatch thread, at least frameNanos after the
+     * previous one, and applies all the commands posted until it starts.
+     */
+    private void requestFrame() {
+        if (!frameScheduled.compareAndSet(false, true)) return;
+        long delay = nextFrameNanos - System.nanoTime();
+        if (delay <= 0) EventQueue.invokeLater(this::frame);
+        else try {
+            frameScheduler.schedule(() -> EventQueue.invokeLater(this::frame), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ignored) { // disposed
         }
+    }
 
-        private TimerPanel() {
-            timerField = new JLabel(config.turnTimeoutMillis < 0 ? "PLAY" : "GET READY...");
+    private void frame() {
+        nextFrameNanos = System.nanoTime() + frameNanos;
+        frameScheduled.set(false);
+
+        for (Runnable command = commands.poll(); command != null; command = commands.poll())
+            command.run();
+        apply(timerCommand.getAndSet(null));
+        for (int player = 0; player < config.players; player++) {
+            apply(freezeCommands.getAndSet(player, null));
+            apply(scoreCommands.getAndSet(player, null));
+        }
+        gamePanel.flush();
+
+        // the countdown asks for another frame when the time it shows changes
+        long nextTick = timerPanel.refresh();
+        if (nextTick < countdownTickNanos) {
+            countdownTickNanos = nextTick;
+            try {
+                frameScheduler.schedule(() -> {
+                    countdownTickNanos = Long.MAX_VALUE;
+                    requestFrame();
+                }, nextTick - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ignored) { // disposed
+            }
+        }
+    }
+
+    private static void apply(Runnable command) {
+        if (command != null) command.run();
+    }
+
+    private class TimerPanel extends JPanel {
+
+        private final TimerField timerField;
 
-            // set fonts and color
-            timerField.setFont(new Font("Serif", Font.BOLD, config.fontSize));
-            timerField.setForeground(Color.BLACK);
+        /**
+         * The running countdown: the time it reaches 0 (on the game clock) and the time left when it turns red.
+         */
+        private boolean countingDown;
+        private long deadlineMillis;
+        private long warnMillies;
 
+        /**
+         * The countdown text, written into the same buffer every time it changes.
+         */
+        private final char[] countdown = new char[64];
+        private final int prefixLength;
+        private long shownValue = -1;
+        private boolean shownWarn;
+
+        private TimerPanel() {
+            timerField = new TimerField(config.turnTimeoutMillis < 0 ? "PLAY" : "GET READY...");
+            String prefix = "Remaining Time: ";
+            prefix.getChars(0, prefix.length(), countdown, 0);
+            prefixLength = prefix.length();
             add(timerField);
         }
 
         private void setCountdown(long millies, boolean warn) {
-            timerField.setText(generateTime(millies, warn));
-            timerField.setForeground(warn ? Color.RED : Color.BLACK);
+            countingDown = false;
+            showCountdown(millies, warn);
+        }
+
+        private void startCountdown(long deadlineMillis, long warnMillies) {
+            countingDown = true;
+            this.deadlineMillis = deadlineMillis;
+            this.warnMillies = warnMillies;
         }
 
         private void setElapsed(long millies) {
+            countingDown = false;
+            shownValue = -1;
             timerField.setText("Elapsed time: " + millies / 1000);
         }
+
+        /**
+         * Shows the time left of the running countdown, if there is one.
+         *
+         * @return - the time (as in System.nanoTime) the shown time changes next, or Long.MAX_VALUE if it does not.
+         *           With a simulated clock this is when it would change if the game time passed as real time.
+         */
+        private long refresh() {
+            if (!countingDown) return Long.MAX_VALUE;
+            long millies = Math.max(0, deadlineMillis - clock.currentTimeMillis());
+            boolean warn = millies < warnMillies;
+            showCountdown(millies, warn);
+            if (millies == 0) {
+                countingDown = false;
+                return Long.MAX_VALUE;
+            }
+
+            // the shown time is rounded to whole seconds, or to hundredths of a second when warning
+            long step = warn ? 10 : 1000;
+            long untilChange = (millies + step / 2) % step + 1;
+            if (!warn) untilChange = Math.min(untilChange, millies - warnMillies + 1);
+            return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(untilChange);
+        }
+
+        private void showCountdown(long millies, boolean warn) {
+            long value = warn ? (millies + 5) / 10 : (millies + 500) / 1000;
+            if (value == shownValue && warn == shownWarn) return;
+            shownValue = value;
+            shownWarn = warn;
+
+            int length = prefixLength;
+            if (warn) {
+                length = appendDigits(value / 100, length);
+                countdown[length++] = '.';
+                countdown[length++] = (char) ('0' + value / 10 % 10);
+                countdown[length++] = (char) ('0' + value % 10);
+            } else length = appendDigits(value, length);
+            timerField.setChars(countdown, length, warn ? Color.RED : Color.BLACK);
+        }
+
+        private int appendDigits(long value, int at) {
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) digits++;
+            for (int i = at + digits - 1; i >= at; i--, value /= 10)
+                countdown[i] = (char) ('0' + value % 10);
+            return at + digits;
+        }
+    }
+
+    /**
+     * A line of text, either a string or the first characters of a buffer (which is painted without copying it).
+     */
+    private class TimerField extends JComponent {
+
+        private String text;
+        private char[] chars;
+        private int length;
+
+        private TimerField(String text) {
+            this.text = text;
+            setFont(new Font("Serif", Font.BOLD, config.fontSize));
+            setForeground(Color.BLACK);
+
+            // wide enough for the timer texts
+            FontMetrics metrics = getFontMetrics(getFont());
+            int width = 0;
+            for (String sample : new String[]{text, "Remaining Time: 8888.88", "Elapsed time: 888888"})
+                width = Math.max(width, metrics.stringWidth(sample));
+            setPreferredSize(new Dimension(width, metrics.getHeight()));
+        }
+
+        private void setText(String text) {
+            this.text = text;
+            setForeground(Color.BLACK);
+            repaint();
+        }
+
+        private void setChars(char[] chars, int length, Color color) {
+            this.text = null;
+            this.chars = chars;
+            this.length = length;
+            setForeground(color);
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+            if (hints instanceof Map<?, ?> && g instanceof Graphics2D)
+                ((Graphics2D) g).addRenderingHints((Map<?, ?>) hints);
+            g.setFont(getFont());
+            g.setColor(getForeground());
+            FontMetrics metrics = g.getFontMetrics();
+            int width = text != null ? metrics.stringWidth(text) : metrics.charsWidth(chars, 0, length);
+            int x = (getWidth() - width) / 2;
+            int y = (getHeight() - metrics.getHeight()) / 2 + metrics.getAscent();
+            if (text != null) g.drawString(text, x, y);
+            else g.drawChars(chars, 0, length, x, y);
+        }
     }
 
     private class GamePanel extends JLayeredPane {
 
         private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
+        private final CardImageCache deck;
+
+        /**
+         * The card in each cell (-1 if none).
+         */
+        private final int[][] grid;
         private final JLabel[][] tokenText;
 
-        private Image loadImageResource(String filename) {
+        /**
+         * The players having a token on each slot.
+         */
+        private final BitSet[] playerTokens;
+
+        /**
+         * The label text of each set of players seen so far, so showing the same players again builds no new string.
+         */
+        private final Map<BitSet, String> tokenLabels = new HashMap<>();
+        private static final int MAX_TOKEN_LABELS = 4096;
+
+        private BufferedImage loadImageResource(String filename) {
             URL imageResource = getClass().getClassLoader().getResource(filename);
             if (imageResource == null)
                 throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
+            try {
+                return ImageIO.read(imageResource);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * The atlas of the card images, read when the first card image is needed.
+         */
+        private CardAtlas atlas;
+        private boolean atlasLoaded;
+
+        private synchronized CardAtlas atlas() {
+            if (!atlasLoaded) {
+                atlasLoaded = true;
+                try {
+                    atlas = CardAtlas.load();
+                } catch (IOException e) {
+                    logger.severe("cannot read the card atlas, loading the card images one by one: " + e);
+                }
+            }
+            return atlas;
+        }
+
+        private String cardFilename(int card) {
+            return intInBaseToPaddedString(card, config.featureCount, config.featureSize) + ".png";
+        }
+
+        private BufferedImage loadCardImage(String filename) {
+            CardAtlas atlas = atlas();
+            BufferedImage image = atlas == null ? null : atlas.image(filename);
+            return image != null ? image : loadImageResource("cards/" + filename);
         }
 
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
-
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+            // the card images are made when they are first dealt: drawn, or loaded from the atlas (or the png files)
+            IntFunction<BufferedImage> source;
+            if (config.cardRenderer.equals(Config.RENDERER_PNG) && config.featureSize < 10 // otherwise there will be naming conflicts
+                    && getClass().getClassLoader().getResource("cards/" + cardFilename(config.deckSize - 1)) != null) {
+                source = card -> loadCardImage(cardFilename(card));
+            } else {
+                if (config.cardRenderer.equals(Config.RENDERER_PNG))
+                    logger.severe("warning: there are no card images for this deck, drawing the cards instead.");
+                source = new CardRenderer(config, util, config.cellWidth, config.cellHeight)::render;
+            }
+            deck = new CardImageCache(logger, source, config.cellWidth, config.cellHeight, config.cardImageCacheSize,
+                    card -> post(() -> cardLoaded(card)));
+            emptyCard = CardImageCache.scale(loadImageResource("cards/empty_card.png"), config.cellWidth, config.cellHeight);
 
-            grid = new Image[config.rows][config.columns];
+            grid = new int[config.rows][config.columns];
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
+            playerTokens = new BitSet[config.tableSize];
+            Arrays.setAll(playerTokens, slot -> new BitSet(config.players));
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
                     // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
+                    grid[row][column] = -1;
 
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
@@ -148,27 +453,38 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
+        /**
+         * The slots whose card or tokens changed since the last frame.
+         */
+        private final BitSet dirtyCards = new BitSet();
+        private final BitSet dirtyTokens = new BitSet();
+
         private void placeCard(int slot, int card) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            grid[row][column] = card;
+            markDirty(dirtyCards, slot);
         }
 
         private void removeCard(int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            grid[row][column] = -1;
+            markDirty(dirtyCards, slot);
+        }
+
+        /**
+         * Repaints the cells showing a card whose image was just loaded.
+         */
+        private void cardLoaded(int card) {
+            for (int slot = 0; slot < config.tableSize; slot++)
+                if (grid[slot / config.columns][slot % config.columns] == card)
+                    markDirty(dirtyCards, slot);
         }
 
         private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            playerTokens[slot].set(player);
+            markDirty(dirtyTokens, slot);
         }
 
         private void removeTokens() {
@@ -177,38 +493,62 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
-            }
+            playerTokens[slot].clear();
+            markDirty(dirtyTokens, slot);
         }
 
         private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            playerTokens[slot].clear(player);
+            markDirty(dirtyTokens, slot);
         }
 
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
-            }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+        private void markDirty(BitSet dirty, int slot) {
+            dirty.set(slot);
+        }
+
+        /**
+         * Repaints the cells of the slots that changed since the last frame.
+         */
+        private void flush() {
+            for (int slot = dirtyCards.nextSetBit(0); slot >= 0; slot = dirtyCards.nextSetBit(slot + 1))
+                repaint((slot % config.columns) * config.cellWidth, (slot / config.columns) * config.cellHeight, config.cellWidth, config.cellHeight);
+            for (int slot = dirtyTokens.nextSetBit(0); slot >= 0; slot = dirtyTokens.nextSetBit(slot + 1))
+                tokenText[slot / config.columns][slot % config.columns].setText(tokenLabel(playerTokens[slot]));
+            dirtyCards.clear();
+            dirtyTokens.clear();
+        }
+
+        /**
+         * @param players - a set of players.
+         * @return - the names of the players, separated by commas.
+         */
+        private String tokenLabel(BitSet players) {
+            String label = tokenLabels.get(players);
+            if (label != null) return label;
+
+            StringJoiner names = new StringJoiner(", ");
+            for (int player = players.nextSetBit(0); player >= 0; player = players.nextSetBit(player + 1))
+                names.add(config.playerNames[player]);
+            label = names.toString();
+            if (tokenLabels.size() >= MAX_TOKEN_LABELS) tokenLabels.clear();
+            tokenLabels.put((BitSet) players.clone(), label);
+            return label;
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            // draw only the card images inside the repainted region
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) clip = new Rectangle(getSize());
+            int firstRow = Math.max(0, clip.y / config.cellHeight);
+            int lastRow = Math.min(config.rows - 1, (clip.y + clip.height - 1) / config.cellHeight);
+            int firstColumn = Math.max(0, clip.x / config.cellWidth);
+            int lastColumn = Math.min(config.columns - 1, (clip.x + clip.width - 1) / config.cellWidth);
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    Image image = grid[row][column] < 0 ? null : deck.get(grid[row][column]);
+                    g.drawImage(image == null ? emptyCard : image, (column * config.cellWidth), (row * config.cellHeight), this);
+                }
         }
     }
 
@@ -276,63 +616,76 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        gamePanel.deck.prefetch(card);
+        post(() -> gamePanel.placeCard(slot, card));
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        post(() -> gamePanel.removeCard(slot));
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        post(() -> gamePanel.placeToken(player, slot));
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        post(gamePanel::removeTokens);
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        post(() -> gamePanel.removeTokens(slot));
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        post(() -> gamePanel.removeToken(player, slot));
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        post(timerCommand, () -> timerPanel.setCountdown(millies, warn));
+    }
+
+    @Override
+    public void startCountdown(long millies, long warnMillies) {
+        long deadlineMillis = clock.currentTimeMillis() + millies;
+        post(timerCommand, () -> timerPanel.startCountdown(deadlineMillis, warnMillies));
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        post(timerCommand, () -> timerPanel.setElapsed(millies));
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        post(freezeCommands, player, () -> playersPanel.setFreeze(player, millies));
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        post(scoreCommands, player, () -> playersPanel.setScore(player, score));
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        post(() -> {
+            playersPanel.setVisible(false);
+            winnerPanel.announceWinner(players);
+            winnerPanel.setVisible(true);
+        });
     }
 
     @Override
     public void dispose() {
-        super.dispose();
+        post(() -> {
+            frameScheduler.shutdownNow();
+            gamePanel.deck.shutdown();
+            super.dispose();
+        });
     }
 }
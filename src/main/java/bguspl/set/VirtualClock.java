@@ -0,0 +1,212 @@
+package bguspl.set;
+
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A simulated implementation of the Clock interface.
+ * The time does not pass by itself: whenever all the registered threads are blocked (sleeping on this clock, or
+ * waiting for one another), the time jumps straight to the earliest pending wake up time. This way a whole turn
+ * timeout passes in a fraction of a millisecond, while the order of events stays the same as in real time.
+ * Whether the time can advance is checked by a single time keeper thread, which runs while threads wait on the clock:
+ * the sleeping threads block until the time keeper signals them, and a thread polling a queue blocks on the queue.
+ */
+public class VirtualClock implements Clock {
+
+    /**
+     * The (real) number of nanoseconds the time keeper waits between two checks: it starts with the minimum whenever a
+     * thread starts waiting on the clock, and backs off up to the maximum while nothing happens.
+     */
+    private static final long MIN_CHECK_NANOS = 20_000;
+    private static final long MAX_CHECK_NANOS = 1_000_000;
+
+    /**
+     * The (real) number of nanoseconds the time keeper lingers with no thread waiting on the clock before it exits.
+     */
+    private static final long IDLE_NANOS = 100_000_000;
+
+    /**
+     * The current (simulated) time in milliseconds.
+     */
+    private volatile long now;
+
+    /**
+     * The wake up times of all the threads currently waiting on this clock.
+     */
+    private final PriorityQueue<Long> deadlines = new PriorityQueue<>();
+
+    /**
+     * The threads that must all be blocked for the time to advance.
+     */
+    private final Set<Thread> participants = ConcurrentHashMap.newKeySet();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when the time advances (awaited by the sleeping threads).
+     */
+    private final Condition advanced = lock.newCondition();
+
+    /**
+     * Signalled when a thread starts waiting on the clock (awaited by the time keeper).
+     */
+    private final Condition waiting = lock.newCondition();
+
+    /**
+     * The thread checking whether the time can advance (null when no thread waits on the clock for a while).
+     */
+    private Thread timeKeeper = null;
+
+    /**
+     * True iff all participants were found blocked on the previous check (the time advances on the second one, so a
+     * thread that was just woken up gets a chance to run first).
+     */
+    private boolean quiet = false;
+
+    public VirtualClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void register(Thread thread) {
+        participants.add(thread);
+    }
+
+    @Override
+    public void unregister(Thread thread) {
+        participants.remove(thread);
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (millis <= 0) return;
+        lock.lockInterruptibly();
+        try {
+            long deadline = now + millis;
+            addDeadline(deadline);
+            try {
+                while (now < deadline)
+                    advanced.await();
+            } finally {
+                deadlines.remove(deadline);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T poll(BlockingQueue<T> queue, long millis) throws InterruptedException {
+        T item = queue.poll();
+        if (item != null || millis <= 0) return item;
+
+        long deadline;
+        lock.lockInterruptibly();
+        try {
+            deadline = now + millis;
+            addDeadline(deadline);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            // the queue wakes the thread up as soon as an element arrives, the time is checked with a back off
+            long nanos = MIN_CHECK_NANOS;
+            while (now < deadline) {
+                item = queue.poll(nanos, TimeUnit.NANOSECONDS);
+                if (item != null) return item;
+                nanos = Math.min(2 * nanos, MAX_CHECK_NANOS);
+            }
+            return queue.poll();
+        } finally {
+            lock.lock();
+            try {
+                deadlines.remove(deadline);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds the deadline of a waiting thread and wakes the time keeper up (starting it if needed). Called with the lock.
+     */
+    private void addDeadline(long deadline) {
+        deadlines.add(deadline);
+        if (timeKeeper == null) {
+            timeKeeper = new Thread(this::keepTime, "virtual-clock");
+            timeKeeper.setDaemon(true);
+            timeKeeper.start();
+        } else
+            waiting.signal();
+    }
+
+    /**
+     * The time keeper loop: moves the time forward whenever all the participants are blocked.
+     */
+    private void keepTime() {
+        long nanos = MIN_CHECK_NANOS;
+        lock.lock();
+        try {
+            while (true) {
+                if (deadlines.isEmpty()) {
+                    quiet = false;
+                    if (waiting.awaitNanos(IDLE_NANOS) <= 0 && deadlines.isEmpty()) return;
+                    nanos = MIN_CHECK_NANOS;
+                } else if (!tryAdvance()) {
+                    boolean signalled = waiting.awaitNanos(nanos) > 0;
+                    nanos = signalled ? MIN_CHECK_NANOS : Math.min(2 * nanos, MAX_CHECK_NANOS);
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            timeKeeper = null;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the time forward to the earliest deadline if all the participants are blocked. Called with the lock.
+     *
+     * @return - true iff the time advanced.
+     */
+    private boolean tryAdvance() {
+        if (!participantsBlocked()) {
+            quiet = false;
+            return false;
+        }
+        if (!quiet) {
+            quiet = true;
+            return false;
+        }
+        quiet = false;
+        Long next = deadlines.peek();
+        if (next == null || next <= now) return false;
+        now = next;
+        advanced.signalAll();
+        return true;
+    }
+
+    private boolean participantsBlocked() {
+        for (Thread thread : participants) {
+            Thread.State state = thread.getState();
+            if (state == Thread.State.NEW || state == Thread.State.RUNNABLE)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The binary protocol between the remote player server and its clients.
+ * Every message is its length (2 bytes, big-endian, not including the length itself), its type (a byte) and its body.
+ * Numbers in the bodies are variable-length (7 bits per byte, least significant first; signed numbers are zigzag
+ * encoded), so the small numbers of the game mostly take a single byte. A reader skips the messages of types it does
+ * not know, so new message types can be added without changing the version.
+ * <p>
+ * Server to client: HELLO (version, seat) once, then a SNAPSHOT of the whole state, then a FRAME with the changes of
+ * every tick in which something changed (see BoardState).
+ * Client to server: KEY (slot) for every key press.
+ */
+public final class WireProtocol {
+
+    /**
+     * The version of the protocol (a client that does not support the version of the server should disconnect).
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The message types.
+     */
+    public static final byte HELLO = 1;      // version, seat (-1 for a spectator)
+    public static final byte SNAPSHOT = 2;   // see BoardState.writeSnapshot
+    public static final byte FRAME = 3;      // see BoardState.writeFrame
+    public static final byte KEY = 4;        // slot
+
+    /**
+     * The size of the length of a message.
+     */
+    public static final int LENGTH_BYTES = 2;
+
+    /**
+     * The maximal size of a message (including its length).
+     */
+    public static final int MAX_MESSAGE_BYTES = LENGTH_BYTES + 0xFFFF;
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Starts a message: reserves its length and writes its type.
+     *
+     * @param out  - the buffer to write to.
+     * @param type - the type of the message.
+     * @return - the position of the message, for end.
+     */
+    public static int begin(ByteBuffer out, byte type) {
+        int start = out.position();
+        out.putShort((short) 0).put(type);
+        return start;
+    }
+
+    /**
+     * Ends a message by writing its length.
+     *
+     * @param out   - the buffer the message was written to.
+     * @param start - the position returned by begin.
+     */
+    public static void end(ByteBuffer out, int start) {
+        int length = out.position() - start - LENGTH_BYTES;
+        if (length > 0xFFFF) throw new IllegalStateException("message too long: " + length);
+        out.putShort(start, (short) length);
+    }
+
+    /**
+     * Reads the next message, if it was received completely.
+     *
+     * @param in - the received bytes (in read mode). The position is moved past the message.
+     * @return - the message (starting with its type), or null if the message is not complete yet.
+     * @throws IOException - if the message is empty.
+     */
+    public static ByteBuffer next(ByteBuffer in) throws IOException {
+        if (in.remaining() < LENGTH_BYTES) return null;
+        int length = in.getShort(in.position()) & 0xFFFF;
+        if (length == 0) throw new IOException("empty message");
+        if (in.remaining() < LENGTH_BYTES + length) return null;
+        int start = in.position() + LENGTH_BYTES;
+        ByteBuffer message = in.slice(start, length);
+        in.position(start + length);
+        return message;
+    }
+
+    public static void writeHello(ByteBuffer out, int seat) {
+        int start = begin(out, HELLO);
+        putVarint(out, VERSION);
+        putSignedVarint(out, seat);
+        end(out, start);
+    }
+
+    /**
+     * @param message - a HELLO message (from next).
+     * @return - the seat of the client (-1 for a spectator).
+     * @throws IOException - if the version of the server is not supported.
+     */
+    public static int readHello(ByteBuffer message) throws IOException {
+        if (message.get() != HELLO) throw new IOException("expected a hello message");
+        int version = getVarint(message);
+        if (version != VERSION) throw new IOException("unsupported protocol version " + version);
+        return getSignedVarint(message);
+    }
+
+    public static void writeKey(ByteBuffer out, int slot) {
+        int start = begin(out, KEY);
+        putVarint(out, slot);
+        end(out, start);
+    }
+
+    /**
+     * Writes a non-negative number in as few bytes as needed.
+     */
+    public static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static void putSignedVarint(ByteBuffer out, int value) {
+        putVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    public static void putVarlong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static void putSignedVarlong(ByteBuffer out, long value) {
+        putVarlong(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * @throws IOException - if the number is longer than an int.
+     */
+    public static int getVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("malformed number");
+    }
+
+    public static int getSignedVarint(ByteBuffer in) throws IOException {
+        int value = getVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @throws IOException - if the number is longer than a long.
+     */
+    public static long getVarlong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("malformed number");
+    }
+
+    public static long getSignedVarlong(ByteBuffer in) throws IOException {
+        long value = getVarlong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,106 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import bguspl.set.Env;
+import bguspl.set.Metrics;
+
+/**
+ * The sets on the table, shared by all the computer players.
+ * The sets are searched for at most once per version of the board (i.e. after a card was placed or removed), by the
+ * first player asking for them, and published as an immutable snapshot that all the players read without locking.
+ */
+public class BoardSolver {
+
+    private final Env env;
+    private final Table table;
+
+    /**
+     * The solver used for the search (created on first use, and only used while holding the lock of this object).
+     */
+    private SetSolver solver;
+
+    /**
+     * The latest published snapshot.
+     */
+    private volatile Snapshot snapshot = new Snapshot(-1, new int[0][]);
+
+    /**
+     * The number of searches (at most one per version of the board).
+     */
+    private final Metrics.Counter searches;
+
+    public BoardSolver(Env env, Table table) {
+        this.env = env;
+        this.table = table;
+        this.searches = env.metrics.counter("solver.searches");
+    }
+
+    /**
+     * The sets on a certain version of the board.
+     */
+    public static final class Snapshot {
+
+        /**
+         * The version of the board the sets were found on.
+         */
+        public final long version;
+        private final int[][] sets;
+
+        private Snapshot(long version, int[][] sets) {
+            this.version = version;
+            this.sets = sets;
+        }
+
+        /**
+         * @return - the number of sets on the board.
+         */
+        public int size() {
+            return sets.length;
+        }
+
+        /**
+         * @param index - the index of the set (0 to size() - 1).
+         * @return - the slots of the set.
+         */
+        public int[] set(int index) {
+            return sets[index].clone();
+        }
+
+        /**
+         * Chooses a set for a player. When spreading, different players get different sets (as long as there are
+         * enough), so they do not all go for the same one.
+         *
+         * @param player - the player id.
+         * @param spread - true to spread the players over the sets, false to choose a random set.
+         * @param random - the random generator of the player.
+         * @return - the slots of the set, or null if there are no sets on the board.
+         */
+        public int[] setFor(int player, boolean spread, Random random) {
+            if (sets.length == 0) return null;
+            return set(spread ? player % sets.length : random.nextInt(sets.length));
+        }
+    }
+
+    /**
+     * @return - the sets on the current version of the board.
+     */
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current.version == table.boardVersion()) return current;
+        synchronized (this) {
+            long version = table.boardVersion();
+            if (snapshot.version != version) {
+                if (solver == null) solver = new SetSolver(env);
+                // if the board changes while copying, the snapshot has an old version and will be searched again
+                Integer[] slotToCard = Arrays.copyOf(table.slotToCard, table.slotToCard.length);
+                List<int[]> sets = solver.findSets(slotToCard, Integer.MAX_VALUE);
+                snapshot = new Snapshot(version, sets.toArray(new int[0][]));
+                searches.increment();
+            }
+            return snapshot;
+        }
+    }
+}
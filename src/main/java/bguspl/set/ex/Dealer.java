@@ -2,14 +2,19 @@ package bguspl.set.ex;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Random;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import bguspl.set.Env;
-import bguspl.set.ThreadLogger;
+import bguspl.set.FlightEvents;
+import bguspl.set.GameExecutors;
+import bguspl.set.Journal;
+import bguspl.set.Metrics;
+import bguspl.set.RuntimeSettings;
 
 /**
  * This class manages the dealer's threads and data
@@ -29,7 +34,6 @@ public class Dealer implements Runnable {
     private int[] playerCardsToRemove;
     private boolean elapsed = false;
     public boolean timer = false;
-    private boolean hints;
     
 
 
@@ -43,18 +47,62 @@ public class Dealer implements Runnable {
      */
     private volatile boolean terminate;
 
+    /**
+     * True iff the game should end after the current round.
+     */
+    private volatile boolean draining;
+
+    /**
+     * The thread running the dealer (null when it is not running).
+     */
     private Thread dThread = null;
 
+    /**
+     * Where the player loops run and the scheduler shared by all the random computer players (instead of a thread per
+     * player). Unless given by the game server, the dealer creates its own when it starts.
+     * Written and read under the dealer's lock, together with starting the players, so terminate either sees the
+     * started players or keeps them from starting.
+     */
+    private GameExecutors executors;
+    private boolean ownsExecutors;
+
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
     private long reshuffleTime = Long.MAX_VALUE;
+
+    /**
+     * The seed of the random generator used for shuffling the deck (recorded in the journal for replaying the game).
+     */
+    private final long seed;
+    private final Random random;
     private long startTime = 0;
     private final long SECOND = 1000;
-    private final long TEN_MILLIE = 10;
+
+    /**
+     * The dealer metrics: the verdicts, the reshuffles, the work per loop iteration and the time to refill the table.
+     */
+    private final Metrics.Counter points;
+    private final Metrics.Counter penalties;
+    private final Metrics.Counter reshuffles;
+    private final Metrics.Histogram loopMicros;
+    private final Metrics.Histogram refillMicros;
+
+    /**
+     * The flight recorder event of the current table freeze (null while the table is not frozen).
+     */
+    private FlightEvents.TableFrozen tableFrozen = null;
 
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, null);
+    }
+
+    /**
+     * @param executors - where the players run (null for a thread per player and a scheduler of the dealer's own).
+     */
+    public Dealer(Env env, Table table, Player[] players, GameExecutors executors) {
         this.env = env;
+        this.executors = executors;
         this.table = table;
         this.players = players;
         this.terminate = false;
@@ -65,7 +113,14 @@ public class Dealer implements Runnable {
             elapsed = true;
         if(env.config.turnTimeoutMillis > 0)
             timer = true;
-        hints = env.config.hints;
+        seed = env.config.seed != 0 ? env.config.seed : System.nanoTime();
+        random = new Random(seed);
+
+        points = env.metrics.counter("dealer.points");
+        penalties = env.metrics.counter("dealer.penalties");
+        reshuffles = env.metrics.counter("dealer.reshuffles");
+        loopMicros = env.metrics.histogram("dealer.loopMicros");
+        refillMicros = env.metrics.histogram("dealer.refillMicros");
     }
 
     /**
@@ -73,19 +128,32 @@ public class Dealer implements Runnable {
      */
     @Override
     public void run() {
-        dThread = Thread.currentThread();
-        env.logger.info("thread " + (Thread.currentThread()).getName() + " starting run().");
+        synchronized (this) {
+            if (terminate)
+                return; // terminated before it started
+            dThread = Thread.currentThread();
+        }
+        env.clock.register(dThread);
+        env.journal.record(Journal.Event.SEED, -1, -1, -1, seed);
+        env.logger.info(() -> "thread " + Thread.currentThread().getName() + " starting run().");
 
         lockEntireTable();
 
-        // creating the players Threads
-        for (int i = 0; i < players.length; ++i){
-            ThreadLogger playerThread = new ThreadLogger(players[i], "player " + i, env.logger);
-            players[i].setPlayerThread(playerThread);
-            playerThread.startWithLog();
+        synchronized (this) {
+            if (!terminate) {
+                if (executors == null) {
+                    int aiThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), env.config.computerPlayers));
+                    executors = GameExecutors.threadPerTask(env.logger, aiThreads);
+                    ownsExecutors = true;
+                }
+
+                // starting the players
+                for (int i = 0; i < players.length; ++i)
+                    players[i].start(executors, "player " + i);
+            }
         }
 
-        startTime = System.currentTimeMillis();
+        startTime = env.clock.currentTimeMillis();
 
         //strating the game
         while (!shouldFinish()) {
@@ -95,7 +163,7 @@ public class Dealer implements Runnable {
             releaseEntireTable();
 
             if(elapsed){
-                startTime = System.currentTimeMillis();
+                startTime = env.clock.currentTimeMillis();
             }
             
             timerLoop();
@@ -116,6 +184,13 @@ public class Dealer implements Runnable {
             announceWinners();
             terminate();
         }
+        commitTableFrozen(); // the table stays frozen once the game is over
+        for(Player player : players)
+            env.journal.record(Journal.Event.SCORE, player.id, -1, player.score(), table.boardVersion(), env.clock.currentTimeMillis());
+        env.clock.unregister(Thread.currentThread());
+        synchronized (this) {
+            dThread = null;
+        }
     }
 
     /**
@@ -124,9 +199,9 @@ public class Dealer implements Runnable {
     private void timerLoop() {
         updateTimerDisplay(true);
         boolean printedHints = false;
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+        while (!terminate && !draining && env.clock.currentTimeMillis() < reshuffleTime) {
             
-            if(hints && !printedHints){
+            if(env.settings.get().hints && !printedHints){
                 table.hints();
                 printedHints = true;
             }
@@ -136,7 +211,9 @@ public class Dealer implements Runnable {
                 return;
             }
     
-            sleepUntilWokenOrTimeout(); // wake up and check if there is a set
+            Player claimant = sleepUntilWokenOrTimeout(); // wake up and check if there is a set
+            long start = System.nanoTime();
+            checkSet(claimant);
 
             if(playerCardsToRemove != null){
                 printedHints = false;
@@ -146,21 +223,23 @@ public class Dealer implements Runnable {
             else
                 updateTimerDisplay(false);
             
-            
+            loopMicros.record((System.nanoTime() - start) / 1000);
         }
     }
 
     private void changeBoard(){
+        long start = System.nanoTime();
         acquireLocks(playerCardsToRemove);
         updateTimerDisplay(true);
         removeCardsFromTable();
         placeCardsOnTable();
 
         if(elapsed)
-            startTime = System.currentTimeMillis();
+            startTime = env.clock.currentTimeMillis();
         
         releaseLocks(playerCardsToRemove);
         playerCardsToRemove = null;
+        refillMicros.record((System.nanoTime() - start) / 1000);
     
     }
 
@@ -168,13 +247,34 @@ public class Dealer implements Runnable {
      * Called when the game should be terminated.
      */
     public void terminate() {
+        synchronized (this) {
+            terminate = true; // the players are not started from now on
+        }
         for(int playerId = players.length - 1; playerId > -1; --playerId)
         {
             Player player = players[playerId];
             player.terminate();
         }
-        terminate = true;
-        dThread.interrupt();
+        synchronized (this) {
+            if(ownsExecutors)
+                executors.close();
+            if (dThread != null)
+                dThread.interrupt();
+        }
+    }
+
+    /**
+     * Ends the game after the current round: the claims already made are judged and the winners are announced.
+     */
+    public void drain() {
+        draining = true;
+    }
+
+    /**
+     * @return - where the players run and the scheduler shared by the random computer players.
+     */
+    synchronized GameExecutors executors() {
+        return executors;
     }
 
     /**
@@ -183,7 +283,7 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).isEmpty();
+        return terminate || draining || env.util.findSets(deck, 1).isEmpty();
     }
 
     /**
@@ -197,7 +297,7 @@ public class Dealer implements Runnable {
         }
         
         table.removeCards(playerCardsToRemove);
-        env.logger.info("sizeOfDeck " + deck.size());
+        if (env.logger.isLoggable(Level.INFO)) env.logger.log(Level.INFO, "sizeOfDeck {0}", deck.size());
     }
 
     /**
@@ -210,87 +310,59 @@ public class Dealer implements Runnable {
 
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     *
+     * @return - the player who woke the dealer up with a claim, or null if the time was up (or it was interrupted).
      */
-    private void sleepUntilWokenOrTimeout() {
+    private Player sleepUntilWokenOrTimeout() {
         Player player = null;
         if(timer){
             try{
-                player = table.queueOfPlayers.poll(calculateSleep(), TimeUnit.MILLISECONDS);
-            }catch(InterruptedException wakeUp){dThread.interrupt(); return;}
+                player = env.clock.poll(table.queueOfPlayers, calculateSleep());
+            }catch(InterruptedException wakeUp){dThread.interrupt(); return null;}
         }
         else if (elapsed){
             try {
-                player = table.queueOfPlayers.poll(calculateSleepElapsed(), TimeUnit.MILLISECONDS);
-            }catch(InterruptedException wakeUp){dThread.interrupt(); return;}
+                player = env.clock.poll(table.queueOfPlayers, calculateSleepElapsed());
+            }catch(InterruptedException wakeUp){dThread.interrupt(); return null;}
         }  
 
         else{
             try {
                 player = table.queueOfPlayers.take();
-            }catch(InterruptedException wakeUp){dThread.interrupt(); return;}
+            }catch(InterruptedException wakeUp){dThread.interrupt(); return null;}
         }
         
-        checkSet(player);
+        return player;
     }
 
+    /**
+     * The countdown display counts down by itself, so the dealer only has to wake up when the time is up.
+     */
     private long calculateSleep(){
-        long nextWakeUp;
-        if(reshuffleTime - System.currentTimeMillis() <= env.config.turnTimeoutWarningMillis)
-            nextWakeUp = TEN_MILLIE;
-        else
-            nextWakeUp = SECOND;
-
-        long elapsedTime = System.currentTimeMillis() - startTime;
-        long sleep = nextWakeUp - (elapsedTime % nextWakeUp);
-        return sleep;
+        return Math.max(1, reshuffleTime - env.clock.currentTimeMillis());
     }
 
     private long calculateSleepElapsed(){
-        long elapsedTime = System.currentTimeMillis() - startTime;
+        long elapsedTime = env.clock.currentTimeMillis() - startTime;
         long sleep = SECOND - (elapsedTime % SECOND);
         return sleep;
     }
     
     /**
      * Reset and/or update the countdown and the countdown display.
+     * The countdown display is only told when the countdown restarts (it counts down by itself).
      */
     private void updateTimerDisplay(boolean reset) {
         if(timer){
-            boolean warn = false;
-            if(!reset){
-                long timeLeft = reshuffleTime - System.currentTimeMillis();
-                long roundedTimeLeft = timeLeft - (TEN_MILLIE / 2);
-                
-                if(roundedTimeLeft < 0){
-                    env.ui.setCountdown(0, true);
-                    return;
-                }
-
-                if(timeLeft < env.config.turnTimeoutWarningMillis){
-                    env.ui.setCountdown(roundedTimeLeft, true); //we know that the time will be almost accureate. so we round it
-                    return;
-                }
-
-                roundedTimeLeft = timeLeft - (SECOND / 2);
-                    
-                if(roundedTimeLeft < 0){
-                    env.ui.setCountdown(0, true);
-                    return;
-                }
-                
-                else
-                    env.ui.setCountdown(roundedTimeLeft, false); //we know that the time will be almost accureate. so we round it
-            }
-            else{
-                startTime = System.currentTimeMillis();
-                reshuffleTime = startTime + env.config.turnTimeoutMillis - 1;
-                if(env.config.turnTimeoutMillis < env.config.turnTimeoutWarningMillis)
-                    warn = true;
-                env.ui.setCountdown(env.config.turnTimeoutMillis - 1, warn);
+            if(reset){
+                RuntimeSettings.Snapshot settings = env.settings.get();
+                startTime = env.clock.currentTimeMillis();
+                reshuffleTime = startTime + settings.turnTimeoutMillis - 1;
+                env.ui.startCountdown(settings.turnTimeoutMillis - 1, settings.turnTimeoutWarningMillis);
             }
         }
         else if(elapsed){
-            long time = System.currentTimeMillis() - startTime;
+            long time = env.clock.currentTimeMillis() - startTime;
             env.ui.setElapsed(time + (SECOND / 2)); //we know that the time will be almost accureate. so we round it
             return;
         }
@@ -300,6 +372,7 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
+        env.journal.record(Journal.Event.BOARD_CLEARED, -1, -1, -1, table.boardVersion(), env.clock.currentTimeMillis());
         for(Player player: players){
             player.newBoard();
         }
@@ -335,28 +408,59 @@ public class Dealer implements Runnable {
     }
 
     private void reShuffleDeck(){
-        Collections.shuffle(deck);
+        FlightEvents.Reshuffle event = new FlightEvents.Reshuffle();
+        event.begin();
+        shuffle(deck, random);
+        reshuffles.increment();
+        if (event.shouldCommit()) {
+            event.deckSize = deck.size();
+            event.commit();
+        }
+        env.journal.record(Journal.Event.SHUFFLE, -1, -1, -1, table.boardVersion(), env.clock.currentTimeMillis());
+    }
+
+    /**
+     * Shuffles a deck of cards (the same algorithm as Collections.shuffle, but with any random generator).
+     *
+     * @param deck   - the cards to shuffle.
+     * @param random - the source of randomness.
+     */
+    public static void shuffle(List<Integer> deck, RandomGenerator random) {
+        for (int i = deck.size(); i > 1; --i)
+            Collections.swap(deck, i - 1, random.nextInt(i));
     }
 
     private void checkSet(Player player){
         if(player == null)
             return;
-        BlockingQueue<Integer> waitingOfPlayer = player.getWaitingZone();
-        if(env.util.testSet(player.getCards())){
+        FlightEvents.ClaimJudged event = new FlightEvents.ClaimJudged();
+        event.begin();
+        boolean legal = env.util.testSet(player.getCards());
+        if (event.shouldCommit()) {
+            event.player = player.id;
+            event.legal = legal;
+            event.boardVersion = table.boardVersion();
+            event.commit();
+        }
+        if(legal){
+            env.journal.record(Journal.Event.VERDICT, player.id, -1, 1, table.boardVersion(), env.clock.currentTimeMillis());
             playerCardsToRemove = player.getTokens();
+            points.increment();
             player.point();
         }
         else{
+            env.journal.record(Journal.Event.VERDICT, player.id, -1, 0, table.boardVersion(), env.clock.currentTimeMillis());
+            penalties.increment();
             player.penalty();
         }
-        waitingOfPlayer.offer(0);
+        player.release();
     }
 
     private void acquireLocks(int[] slots){
         for(int i = 0; i < slots.length; ++i){
             Semaphore sem = table.locks[slots[i]];
             try {
-                sem.acquire();
+                table.acquire(sem);
             } catch (InterruptedException e) {dThread.interrupt(); return;}
         }
         
@@ -370,6 +474,8 @@ public class Dealer implements Runnable {
     }
 
     private void lockEntireTable(){
+        tableFrozen = new FlightEvents.TableFrozen();
+        tableFrozen.begin();
         for(int i = 0; i < players.length; i++){
             players[i].setStopInput(true);
         }
@@ -377,7 +483,7 @@ public class Dealer implements Runnable {
         for(int i = 0; i < semaphores.length; ++i){
             Semaphore sem = semaphores[i];
             try {
-                sem.acquire();
+                table.acquire(sem);
             } catch (InterruptedException ignore) {dThread.interrupt(); return;}
         }
     }
@@ -391,6 +497,18 @@ public class Dealer implements Runnable {
             Semaphore sem = semaphores[i];
             sem.release();
         }
+        commitTableFrozen();
+    }
+
+    /**
+     * Commits the flight recorder event of the current table freeze, if there is one.
+     */
+    private void commitTableFrozen() {
+        if (tableFrozen != null && tableFrozen.shouldCommit()) {
+            tableFrozen.slots = table.locks.length;
+            tableFrozen.commit();
+        }
+        tableFrozen = null;
     }
 
 
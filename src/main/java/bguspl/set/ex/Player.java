@@ -1,13 +1,24 @@
 package bguspl.set.ex;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bguspl.set.Config;
 import bguspl.set.Env;
-import bguspl.set.ThreadLogger;
+import bguspl.set.FlightEvents;
+import bguspl.set.GameExecutors;
+import bguspl.set.Journal;
+import bguspl.set.Metrics;
 /**
  * This class manages the players' threads and data
  *
@@ -32,14 +43,14 @@ public class Player implements Runnable {
     public final int id;
 
     /**
-     * The thread representing the current player.
+     * The task running the current player.
      */
-    private Thread playerThread;
+    private GameExecutors.Task playerTask;
 
     /**
-     * The thread of the AI (computer) player (an additional thread used to generate key presses).
+     * The task of the AI (computer) player (an additional loop used to generate key presses).
      */
-    private ThreadLogger aiThread;
+    private volatile GameExecutors.Task aiTask;
 
     /**
      * True iff the player is human (not a computer player).
@@ -63,15 +74,46 @@ public class Player implements Runnable {
 
     private volatile long freeze;
     private final static long SECOND = 1000L;
+    private final static long MICROS_PER_SECOND = 1_000_000L;
     private int legalSetSize;
 
     private volatile boolean stopInput = false;
 
+    /**
+     * Notified when the input is no longer stopped (the AI waits on it instead of polling).
+     */
+    private final Object inputResumed = new Object();
+
+    /**
+     * The AI of a computer player driven by the scheduler (null for other players).
+     */
+    private volatile ScheduledPresses presses;
+
+    /**
+     * The player loop when the player runs as steps of the scheduler (null when it runs on a task of its own).
+     */
+    private volatile Steps steps;
+
+    /**
+     * The minimal time between two key presses of an AI player.
+     */
+    private final long pressIntervalMicros;
+
+    /**
+     * The part of the press intervals of a solver player not slept yet, since the clock sleeps in whole milliseconds.
+     */
+    private long pressDelayMicros;
+
     /**
      * The dealer of the game.
      */
     final Dealer dealer;
 
+    /**
+     * The total time the player was frozen for (points and penalties).
+     */
+    private final Metrics.Counter frozenMillis;
+
     /**
      * The class constructor.
      *
@@ -93,12 +135,32 @@ public class Player implements Runnable {
         this.keyInputQueue = new ArrayBlockingQueue<>(legalSetSize);
         this.waitingOfPlayer = new ArrayBlockingQueue<Integer>(1);
         this.freeze = 0;    
-        playerThread = null;
-        
+        this.pressIntervalMicros = (long) (MICROS_PER_SECOND / env.config.computerPressesPerSecond);
+        playerTask = null;
+        frozenMillis = env.metrics.counter("player" + (id + 1) + ".frozenMillis");
+    }
+
+    public void setPlayerTask(GameExecutors.Task playerTask){
+        this.playerTask = playerTask;
     }
 
-    public void setPlayerThread(ThreadLogger playerThread){
-        this.playerThread = playerThread;
+    /**
+     * Starts the player: on a task of its own, or, when the executors are event driven, as steps of the scheduler,
+     * so that the player holds no thread while it waits for a key press, a verdict or the end of its freeze.
+     *
+     * @param executors - the executors of the game.
+     * @param name      - the name of the task.
+     */
+    void start(GameExecutors executors, String name) {
+        if (!executors.eventDriven()) {
+            setPlayerTask(executors.start(this, name));
+            return;
+        }
+        env.logger.info(() -> "player " + id + " starting as steps of the scheduler.");
+        steps = new Steps(executors, name);
+        if (!human)
+            createArtificialIntelligence();
+        steps.signal();
     }
 
     /**
@@ -106,8 +168,8 @@ public class Player implements Runnable {
      */
     @Override
     public void run() {
-        playerThread = Thread.currentThread();
-        env.logger.info("thread " + Thread.currentThread().getName() + " starting it's run() function.");
+        env.clock.register(Thread.currentThread());
+        env.logger.info(() -> "thread " + Thread.currentThread().getName() + " starting it's run() function.");
         if (!human) {
         createArtificialIntelligence();
         }
@@ -120,7 +182,7 @@ public class Player implements Runnable {
                 env.ui.setFreeze(id, freeze);
                 
                 long timeToSleep = freeze < SECOND ? freeze : SECOND;
-                try{Thread.sleep(timeToSleep);} catch(InterruptedException e){}
+                try{env.clock.sleep(timeToSleep);} catch(InterruptedException e){}
                 
                 freeze -= SECOND;
                 
@@ -129,29 +191,229 @@ public class Player implements Runnable {
                 }
             }
             
-            stopInput = false;
+            if(stopInput)
+                setStopInput(false);
             
         }
             
-        if (!human) try { aiThread.joinWithLog();} catch (InterruptedException ignored) {}
-        env.logger.info("thread " + (Thread.currentThread()).getName() + " ending it's run() function.");
+        if (aiTask != null) try { aiTask.join();} catch (InterruptedException ignored) {}
+        env.clock.unregister(Thread.currentThread());
+        env.logger.info(() -> "thread " + Thread.currentThread().getName() + " ending it's run() function.");
     }
 
     /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * Starts generating key presses for an AI (computer) player, at most config.computerPressesPerSecond of them.
+     * A solver player gets an additional loop of its own (unless the player runs as steps of the scheduler), while
+     * random players share the dealer's scheduler.
+     * Either way, no key presses are generated while the input is stopped (i.e. the player is frozen or waiting for
+     * the dealer), the AI waits until the input is resumed.
      */
-    private void createArtificialIntelligence() {
+    void createArtificialIntelligence() {
         // note: this is a very, very smart AI (!)
-        aiThread = new ThreadLogger(() -> {
-            env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
-            Random rand = new Random();
+        if (Config.STRATEGY_SOLVER.equals(env.config.computerStrategy(id))) {
+            if (steps == null) {
+                aiTask = dealer.executors().start(this::solveAndPress, "computer-" + id);
+                return;
+            }
+            presses = new SolverPresses(dealer.executors().scheduler());
+        } else {
+            presses = new RandomPresses(dealer.executors().scheduler());
+        }
+        presses.start();
+    }
+
+    /**
+     * An AI driven by the scheduler: presses a key on every tick of the scheduler, and is suspended while the input is
+     * stopped until the input is resumed.
+     */
+    private abstract class ScheduledPresses implements Runnable {
+
+        private final ScheduledExecutorService scheduler;
+
+        /**
+         * True iff the presses are suspended until the input is resumed.
+         */
+        private final AtomicBoolean suspended = new AtomicBoolean(false);
+
+        private ScheduledPresses(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void run() {
+            if (terminate)
+                return;
+            if (stopInput) {
+                suspended.set(true);
+                // the input may have been resumed before suspended was set
+                if (!stopInput)
+                    resume();
+                return;
+            }
+            schedule(press());
+        }
+
+        /**
+         * Presses the next key, if any.
+         *
+         * @return - the time until the next tick, in microseconds.
+         */
+        abstract long press();
+
+        void start() {
+            schedule(pressIntervalMicros);
+        }
+
+        private void resume() {
+            if (suspended.compareAndSet(true, false))
+                schedule(pressIntervalMicros);
+        }
+
+        void schedule(long delayMicros) {
+            try {
+                scheduler.schedule(this, delayMicros, TimeUnit.MICROSECONDS);
+            } catch (RejectedExecutionException gameOver) {}
+        }
+    }
+
+    /**
+     * The AI of a random computer player: presses a random slot on every tick of the scheduler.
+     */
+    private class RandomPresses extends ScheduledPresses {
+
+        private final Random rand = new Random();
+
+        private RandomPresses(ScheduledExecutorService scheduler) {
+            super(scheduler);
+        }
+
+        @Override
+        long press() {
+            keyPressed(rand.nextInt(env.config.tableSize));
+            return pressIntervalMicros;
+        }
+    }
+
+    /**
+     * The AI of a solver computer player driven by the scheduler (solveAndPress as ticks of the scheduler): waits a
+     * human-like reaction time, finds a set on the table and presses its slots (after removing any other tokens it has),
+     * pressing again a key the queue did not take.
+     */
+    private class SolverPresses extends ScheduledPresses {
+
+        private final Random rand = new Random();
+
+        /**
+         * The slots to press for the current set, of which next is the next one.
+         */
+        private final int[] plan = new int[2 * legalSetSize];
+        private int planned = 0;
+        private int next = 0;
+
+        private SolverPresses(ScheduledExecutorService scheduler) {
+            super(scheduler);
+        }
+
+        @Override
+        void start() {
+            schedule(reactionMicros());
+        }
+
+        @Override
+        long press() {
+            if (next == planned && !plan())
+                return pressIntervalMicros + reactionMicros(); // no set to press
+            if (keyPressed(plan[next]) && ++next == planned)
+                return pressIntervalMicros + reactionMicros();
+            return pressIntervalMicros;
+        }
+
+        /**
+         * Finds a set on the table and plans its presses.
+         *
+         * @return - true iff there are keys to press.
+         */
+        private boolean plan() {
+            int[] set = table.solver.snapshot().setFor(id, env.config.computerSpreadSets, rand);
+            planned = next = 0;
+            if (set == null)
+                return false;
+            for (Integer token : tokens)
+                if (planned < legalSetSize && Arrays.stream(set).noneMatch(slot -> slot == token))
+                    plan[planned++] = token;
+            for (int slot : set)
+                if (!tokens.contains(slot))
+                    plan[planned++] = slot;
+            return planned > 0;
+        }
+
+        private long reactionMicros() {
+            long reaction = env.config.computerReactionMillis * 1000;
+            return reaction / 2 + (long) (rand.nextDouble() * reaction);
+        }
+    }
+
+    /**
+     * The main loop of a solver computer player: waits a human-like reaction time, finds a set on the table and presses
+     * its slots (after removing any other tokens it has).
+     */
+    private void solveAndPress() {
+        env.clock.register(Thread.currentThread());
+        Random rand = new Random();
+        try {
             while (!terminate) {
-                keyPressed(rand.nextInt(env.config.tableSize));
+                long reaction = env.config.computerReactionMillis;
+                env.clock.sleep(reaction / 2 + (long) (rand.nextDouble() * reaction));
+
+                int[] set = table.solver.snapshot().setFor(id, env.config.computerSpreadSets, rand);
+                if (set == null) {
+                    pressPause(); // looks again at least a press later, even without a reaction time
+                    continue;
+                }
+
+                awaitInput();
+                for (Integer token : tokens)
+                    if (Arrays.stream(set).noneMatch(slot -> slot == token))
+                        pressUntilAccepted(token);
+                for (int slot : set)
+                    if (!tokens.contains(slot))
+                        pressUntilAccepted(slot);
             }
-            env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id, env.logger);
-        aiThread.startWithLog();
+        } catch (InterruptedException ignored) {
+        } finally {
+            env.clock.unregister(Thread.currentThread());
+        }
+    }
+
+    private void pressUntilAccepted(int slot) throws InterruptedException {
+        while (!terminate && !keyPressed(slot)) {
+            if (stopInput)
+                awaitInput();
+            else
+                pressPause(); // the queue is full
+        }
+        pressPause();
+    }
+
+    /**
+     * Waits a press interval. The sub-millisecond remainder is carried forward to the next pause, so the press rate is
+     * kept even when the interval is shorter than a millisecond.
+     */
+    void pressPause() throws InterruptedException {
+        pressDelayMicros += pressIntervalMicros;
+        long millis = pressDelayMicros / 1000;
+        pressDelayMicros -= millis * 1000;
+        env.clock.sleep(millis);
+    }
+
+    /**
+     * Blocks until the input is no longer stopped (or the game is terminated).
+     */
+    private void awaitInput() throws InterruptedException {
+        synchronized (inputResumed) {
+            while (stopInput && !terminate)
+                inputResumed.wait();
+        }
     }
 
     /**
@@ -159,9 +421,18 @@ public class Player implements Runnable {
      */
     public void terminate() {
         terminate = true;
-        playerThread.interrupt();
+        if (aiTask != null)
+            aiTask.interrupt();
+        Steps current = steps;
+        if (current != null) {
+            current.stop();
+            return;
+        }
+        if (playerTask == null)
+            return; // never started
+        playerTask.interrupt();
         try{
-            ((ThreadLogger)playerThread).joinWithLog();
+            playerTask.join();
         } catch (InterruptedException e) {}
     }
 
@@ -169,10 +440,15 @@ public class Player implements Runnable {
      * This method is called when a key is pressed.
      *
      * @param slot - the slot corresponding to the key pressed.
+     * @return - true iff the key press was accepted (i.e. the input is not stopped and the queue is not full).
      */
-    public void keyPressed(int slot) {
-        if(!stopInput)
-            keyInputQueue.offer(slot);
+    public boolean keyPressed(int slot) {
+        boolean accepted = !stopInput && keyInputQueue.offer(slot);
+        if (accepted) {
+            env.journal.record(Journal.Event.KEY_PRESS, id, slot, -1, table.boardVersion(), env.clock.currentTimeMillis());
+            signal();
+        }
+        return accepted;
     }   
        
 
@@ -181,7 +457,13 @@ public class Player implements Runnable {
         try {
             slot = keyInputQueue.take();
         } catch (InterruptedException Interrupted) {return;}
+        act(slot);
+    }
 
+    /**
+     * Places a token on the slot, or removes the token the player has on it.
+     */
+    private void act(int slot){
         if(tokens.contains(slot) && !terminate){
             table.removeToken(this, slot);
             return;
@@ -235,7 +517,9 @@ public class Player implements Runnable {
         @SuppressWarnings("unused")
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.logger.info("player got point");
-        setFreeze(env.config.pointFreezeMillis);
+        long freeze = env.settings.get().pointFreezeMillis;
+        setFreeze(freeze);
+        recordFreeze(freeze, false);
         clearTokens();
         env.ui.setScore(id, ++score);
     }
@@ -245,7 +529,19 @@ public class Player implements Runnable {
      */
     public void penalty() {
         env.logger.info("player got penalty");
-        setFreeze(env.config.penaltyFreezeMillis);
+        long freeze = env.settings.get().penaltyFreezeMillis;
+        setFreeze(freeze);
+        recordFreeze(freeze, true);
+    }
+
+    private void recordFreeze(long freeze, boolean penalty) {
+        FlightEvents.PlayerFrozen event = new FlightEvents.PlayerFrozen();
+        if (event.shouldCommit()) {
+            event.player = id;
+            event.penalty = penalty;
+            event.freeze = freeze;
+            event.commit();
+        }
     }
 
     public int score() {
@@ -267,6 +563,7 @@ public class Player implements Runnable {
 
     public void setFreeze(long freeze){
         this.freeze = freeze; 
+        if (freeze > 0) frozenMillis.add(freeze);
     }
 
     public void clearTokens(){
@@ -289,17 +586,205 @@ public class Player implements Runnable {
     }
 
     public void enterWaitingZone(){
+        Steps current = steps;
+        if (current != null) {
+            current.phase = Phase.VERDICT; // the step returns, and the verdict signals the player
+            return;
+        }
         try {
             waitingOfPlayer.take();
         } catch (InterruptedException e) {}
     }
 
+    /**
+     * Lets the player out of the waiting zone (the verdict on its claim was given, or its claim was discarded).
+     */
+    public void release(){
+        waitingOfPlayer.offer(0);
+        signal();
+    }
+
     public BlockingQueue<Integer> getWaitingZone(){
         return waitingOfPlayer;
     }
 
     public void setStopInput(boolean censor){
         stopInput = censor;
+        if(!censor){
+            synchronized (inputResumed) {
+                inputResumed.notifyAll();
+            }
+            ScheduledPresses current = presses;
+            if(current != null)
+                current.resume();
+            signal();
+        }
+    }
+
+    /**
+     * Signals the steps of the player (if it runs as steps of the scheduler) that there may be something to do.
+     */
+    private void signal(){
+        Steps current = steps;
+        if (current != null)
+            current.signal();
+    }
+
+    /**
+     * What the player loop waits for.
+     */
+    private enum Phase { KEY, VERDICT, FREEZE }
+
+    /**
+     * The player loop (see run) as steps of the scheduler. Instead of blocking, a step returns whenever the player has
+     * to wait: for a key press, for the verdict on its claim, for a second of its freeze, for the input to be resumed
+     * or for a slot the dealer is changing. Whatever ends the wait signals the player, and the signals are coalesced,
+     * so at most one step of the player runs at a time.
+     */
+    private class Steps implements Runnable {
+
+        private final GameExecutors executors;
+        private final String name;
+
+        /**
+         * The signals not handled yet, a step is scheduled when the first of them arrives.
+         */
+        private final AtomicInteger signals = new AtomicInteger();
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        /**
+         * The thread running a step (null between the steps).
+         */
+        private Thread thread = null;
+
+        /**
+         * Where the player loop is (accessed by the steps only, one after another).
+         */
+        private Phase phase = Phase.KEY;
+
+        /**
+         * The time the current second of the freeze ends, or -1 between the freezes.
+         */
+        private long freezeTick = -1;
+
+        private Steps(GameExecutors executors, String name) {
+            this.executors = executors;
+            this.name = name;
+        }
+
+        void signal() {
+            if (signals.getAndIncrement() == 0)
+                schedule(this, 0);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                thread = Thread.currentThread();
+            }
+            try {
+                int handled;
+                do {
+                    handled = signals.get();
+                    if (finished.getCount() > 0)
+                        step();
+                } while (signals.addAndGet(-handled) > 0);
+            } catch (Throwable failure) {
+                finished.countDown();
+                executors.failed(name, failure);
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                }
+                Thread.interrupted(); // a scheduler thread goes on to run other tasks
+            }
+        }
+
+        /**
+         * Runs the player loop until it has to wait.
+         */
+        private void step() {
+            while (!terminate) {
+                if (phase == Phase.VERDICT) {
+                    if (waitingOfPlayer.poll() == null)
+                        return;
+                    phase = Phase.FREEZE;
+                }
+                if (phase == Phase.FREEZE) {
+                    if (frozen())
+                        return;
+                    if (stopInput)
+                        setStopInput(false);
+                    phase = Phase.KEY;
+                }
+                if (stopInput)
+                    return; // until the dealer resumes the input
+                Integer slot = keyInputQueue.peek();
+                if (slot == null)
+                    return;
+                if (table.locks[slot].availablePermits() == 0) {
+                    schedule(this::signal, 1000); // the dealer is changing the slot
+                    return;
+                }
+                keyInputQueue.poll();
+                act(slot);
+                if (phase == Phase.KEY)
+                    phase = Phase.FREEZE;
+            }
+            finish();
+        }
+
+        /**
+         * Counts the freeze down a second at a time, as the player loop does.
+         *
+         * @return - true iff the player is still frozen.
+         */
+        private boolean frozen() {
+            long now = env.clock.currentTimeMillis();
+            if (freezeTick >= 0) {
+                if (now < freezeTick)
+                    return true; // signalled before the second ended
+                freezeTick = -1;
+                freeze -= SECOND;
+                if (freeze <= 0)
+                    env.ui.setFreeze(id, 0);
+            }
+            if (freeze <= 0)
+                return false;
+            env.ui.setFreeze(id, freeze);
+            long timeToSleep = freeze < SECOND ? freeze : SECOND;
+            freezeTick = now + timeToSleep;
+            schedule(this::signal, timeToSleep * 1000);
+            return true;
+        }
+
+        private void schedule(Runnable runnable, long delayMicros) {
+            try {
+                executors.scheduler().schedule(runnable, delayMicros, TimeUnit.MICROSECONDS);
+            } catch (RejectedExecutionException gameOver) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (finished.getCount() > 0)
+                env.logger.info(() -> "player " + id + " terminated.");
+            finished.countDown();
+        }
+
+        /**
+         * Ends the steps of the player, and waits for the step running (if any) to end.
+         */
+        void stop() {
+            signal();
+            synchronized (this) {
+                if (thread != null)
+                    thread.interrupt(); // e.g. waiting for the queue of claims
+            }
+            try {
+                finished.await();
+            } catch (InterruptedException ignored) {}
+        }
     }
 
 }
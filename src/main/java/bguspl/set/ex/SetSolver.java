@@ -0,0 +1,165 @@
+package bguspl.set.ex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import bguspl.set.Env;
+
+/**
+ * Finds the legal sets among the cards on the table.
+ * Any featureSize - 1 cards determine the only card that completes them to a legal set (in every feature they are
+ * either all the same, and so is the missing card, or all different, and the missing card has the remaining value).
+ * So instead of testing every combination of featureSize cards, the solver goes over the combinations of
+ * featureSize - 1 cards and looks the completing card up on the table (O(n^2) for the standard game instead of O(n^3)).
+ * <p>
+ * For featureSize < 3 the completing card is not unique, so the solver falls back to Util.findSets.
+ * <p>
+ * Note: a solver is not thread safe (it reuses its buffers), each thread should have its own.
+ */
+public class SetSolver {
+
+    private final Env env;
+    private final int featureSize;
+    private final int featureCount;
+
+    /**
+     * The features of every card in the deck (computed once).
+     */
+    private final int[][] features;
+
+    /**
+     * The place values of the features in a card id (the card id is the features as a number in base featureSize).
+     */
+    private final int[] placeValues;
+
+    /**
+     * The sum of all the values of a feature (0 + 1 + ... + featureSize - 1).
+     */
+    private final int valuesSum;
+
+    /**
+     * Buffers for a single search.
+     */
+    private final int[] slotOfCard;
+    private final int[] occupied;
+    private final int[] combination;
+
+    public SetSolver(Env env) {
+        this.env = env;
+        featureSize = env.config.featureSize;
+        featureCount = env.config.featureCount;
+        features = new int[env.config.deckSize][];
+        for (int card = 0; card < features.length; ++card)
+            features[card] = env.util.cardToFeatures(card);
+        placeValues = new int[featureCount];
+        for (int i = featureCount - 1, value = 1; i >= 0; --i, value *= featureSize)
+            placeValues[i] = value;
+        valuesSum = featureSize * (featureSize - 1) / 2;
+        slotOfCard = new int[env.config.deckSize];
+        Arrays.fill(slotOfCard, -1);
+        occupied = new int[env.config.tableSize];
+        combination = new int[featureSize - 1];
+    }
+
+    /**
+     * Finds the card that completes the given cards to a legal set.
+     *
+     * @param cards - featureSize - 1 card ids.
+     * @return - the completing card id, or -1 if there is none.
+     */
+    public int completion(int[] cards) {
+        int card = 0;
+        for (int feature = 0; feature < featureCount; ++feature) {
+            int first = features[cards[0]][feature];
+            boolean same = true;
+            int seen = 0, sum = 0;
+            for (int c : cards) {
+                int value = features[c][feature];
+                same &= value == first;
+                seen |= 1 << value;
+                sum += value;
+            }
+            int value;
+            if (same) value = first;
+            else if (Integer.bitCount(seen) == cards.length) value = valuesSum - sum;
+            else return -1;
+            card += value * placeValues[feature];
+        }
+        return card;
+    }
+
+    /**
+     * Finds up to count legal sets on a table.
+     *
+     * @param slotToCard - the card in each slot (null for an empty slot).
+     * @param count      - the maximum number of sets to find.
+     * @return - a list of up to count arrays, each one contains the slots of a legal set.
+     */
+    public List<int[]> findSets(Integer[] slotToCard, int count) {
+        if (featureSize < 3) return findSetsWithUtil(slotToCard, count);
+
+        List<int[]> sets = new ArrayList<>();
+        int n = 0;
+        for (int slot = 0; slot < slotToCard.length; ++slot) {
+            Integer card = slotToCard[slot];
+            if (card != null) {
+                occupied[n++] = slot;
+                slotOfCard[card] = n - 1;
+            }
+        }
+
+        int r = combination.length;
+        int[] cards = new int[r];
+        if (n > r) {
+            for (int i = 0; i < r; ++i)
+                combination[i] = i;
+            while (sets.size() < count) {
+                for (int i = 0; i < r; ++i)
+                    cards[i] = slotToCard[occupied[combination[i]]];
+                int missing = completion(cards);
+                // the completing card must come after the combination, so every set is found only once
+                if (missing >= 0 && slotOfCard[missing] > combination[r - 1]) {
+                    int[] set = new int[r + 1];
+                    for (int i = 0; i < r; ++i)
+                        set[i] = occupied[combination[i]];
+                    set[r] = occupied[slotOfCard[missing]];
+                    sets.add(set);
+                }
+
+                // generate next combination in lexicographic order (the last card is never the first of r)
+                int t = r - 1;
+                while (t >= 0 && combination[t] == n - 1 - r + t) --t;
+                if (t < 0) break;
+                combination[t]++;
+                for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+            }
+        }
+
+        for (int i = 0; i < n; ++i)
+            slotOfCard[slotToCard[occupied[i]]] = -1;
+        return sets;
+    }
+
+    private List<int[]> findSetsWithUtil(Integer[] slotToCard, int count) {
+        List<Integer> cards = new ArrayList<>();
+        for (Integer card : slotToCard)
+            if (card != null) cards.add(card);
+        List<int[]> sets = env.util.findSets(cards, count);
+        for (int[] set : sets)
+            for (int i = 0; i < set.length; ++i)
+                set[i] = Arrays.asList(slotToCard).indexOf(set[i]);
+        return sets;
+    }
+
+    /**
+     * Finds up to count legal sets among the cards currently on the table.
+     *
+     * @param table - the table.
+     * @param count - the maximum number of sets to find.
+     * @return - a list of up to count arrays, each one contains the slots of a legal set.
+     */
+    public List<int[]> findSets(Table table, int count) {
+        return findSets(Arrays.copyOf(table.slotToCard, table.slotToCard.length), count);
+    }
+}
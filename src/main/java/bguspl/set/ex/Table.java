@@ -6,10 +6,14 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 import bguspl.set.Env;
+import bguspl.set.FlightEvents;
+import bguspl.set.Journal;
+import bguspl.set.Metrics;
 
 /**
  * This class contains the data that is visible to the player.
@@ -39,6 +43,25 @@ public class Table {
 
     private int legalSetSize;
 
+    /**
+     * Incremented whenever a card is placed on the table or removed from it.
+     */
+    private volatile long boardVersion = 0;
+
+    /**
+     * The sets on the table, shared by the computer players.
+     */
+    public final BoardSolver solver;
+
+    /**
+     * The time spent waiting for the contended slot locks (the uncontended ones are not recorded).
+     */
+    private final Metrics.Histogram lockWaitMicros;
+
+    /**
+     * The claims discarded without a verdict, because some of their cards were taken by an earlier claim.
+     */
+    private final Metrics.Counter staleClaims;
 
 
     /**
@@ -62,6 +85,10 @@ public class Table {
 
         this.queueSem = new Semaphore(1, true);
         legalSetSize = env.config.featureSize;
+        this.solver = new BoardSolver(env, this);
+        this.lockWaitMicros = env.metrics.histogram("table.lockWaitMicros");
+        this.staleClaims = env.metrics.counter("table.staleClaims");
+        env.metrics.gauge("table.claimQueueDepth", queueOfPlayers::size);
     }
 
     /**
@@ -122,21 +149,32 @@ public class Table {
      */
     public void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.settings.get().tableDelayMillis);
         } catch (InterruptedException e) {Thread.currentThread().interrupt(); return;}
 
         cardToSlot[card] = slot;
         slotToCard[slot] = card;
-        
+        ++boardVersion; // only the dealer changes the board
+        env.journal.record(Journal.Event.CARD_PLACED, -1, slot, card, boardVersion(), env.clock.currentTimeMillis());
+
         env.ui.placeCard(card, slot);
     }
 
     public void placeCards(List<Integer> deck){
+        FlightEvents.CardsPlaced event = new FlightEvents.CardsPlaced();
+        event.begin();
+        int placed = 0;
         for (int slot = 0; slot < env.config.tableSize && !deck.isEmpty(); ++slot)
             if (slotToCard(slot) == null){
                 Integer card = deck.remove(0);
                 placeCard(card, slot);
+                ++placed;
             }
+        if (event.shouldCommit()) {
+            event.cards = placed;
+            event.deckSize = deck.size();
+            event.commit();
+        }
     }
 
     /**
@@ -145,17 +183,22 @@ public class Table {
      */
     public void removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.settings.get().tableDelayMillis);
         } catch (InterruptedException ignored) {Thread.currentThread().interrupt(); return;}
 
         Integer card = slotToCard[slot];
         slotToCard[slot] = null;
         cardToSlot[card] = null;
+        ++boardVersion;
+        env.journal.record(Journal.Event.CARD_REMOVED, -1, slot, card, boardVersion(), env.clock.currentTimeMillis());
         env.ui.removeTokens(slot);
         env.ui.removeCard(slot);
     }
 
     public void removeCards(int[] playerTokens) {
+        FlightEvents.CardsRemoved event = new FlightEvents.CardsRemoved();
+        event.begin();
+        int released = 0;
         for(int token : playerTokens){
             removeCard(token);
         }
@@ -171,10 +214,17 @@ public class Table {
             Player player = iter.next();
             if(player.getNumTokens() != 3){
                 iter.remove();
-                player.getWaitingZone().offer(0);
+                player.release();
+                ++released;
             }
         }
         queueSem.release();
+        staleClaims.add(released);
+        if (event.shouldCommit()) {
+            event.cards = playerTokens.length;
+            event.releasedClaims = released;
+            event.commit();
+        }
     
     }
 
@@ -189,6 +239,19 @@ public class Table {
         }       
     }   
 
+    /**
+     * Acquires a slot lock, measuring the time spent waiting for it (an uncontended lock is not timed).
+     * @param sem - one of the slot locks.
+     * @throws InterruptedException - if interrupted while waiting.
+     */
+    void acquire(Semaphore sem) throws InterruptedException {
+        if (sem.tryAcquire(0, TimeUnit.NANOSECONDS)) // honors fairness, unlike tryAcquire()
+            return;
+        long start = System.nanoTime();
+        sem.acquire();
+        lockWaitMicros.record((System.nanoTime() - start) / 1000);
+    }
+
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
@@ -202,7 +265,7 @@ public class Table {
     public void placeToken(Player player, int slot){
         Semaphore sem = locks[slot];
         try {
-            sem.acquire();
+            acquire(sem);
         } catch (InterruptedException e) {
             return;
         }
@@ -214,6 +277,7 @@ public class Table {
 
         placeToken(player.id, slot);
         player.placeToken(slot);
+        env.journal.record(Journal.Event.TOKEN_PLACED, player.id, slot, slotToCard[slot], boardVersion(), env.clock.currentTimeMillis());
 
         if(player.getNumTokens() == legalSetSize){
             player.setStopInput(true);
@@ -225,8 +289,16 @@ public class Table {
             }
             sem.release();
             
-            if(player.getNumTokens() == legalSetSize)
+            if(player.getNumTokens() == legalSetSize){
+                env.journal.record(Journal.Event.CLAIM, player.id, -1, -1, boardVersion(), env.clock.currentTimeMillis());
                 queueOfPlayers.offer(player);
+                FlightEvents.ClaimSubmitted event = new FlightEvents.ClaimSubmitted();
+                if (event.shouldCommit()) {
+                    event.player = player.id;
+                    event.queueDepth = queueOfPlayers.size();
+                    event.commit();
+                }
+            }
 
             queueSem.release();
             player.enterWaitingZone();
@@ -254,18 +326,26 @@ public class Table {
     public boolean removeToken(Player player, int slot){
         Semaphore sem = locks[slot];
         try {
-            sem.acquire();
+            acquire(sem);
         } catch (InterruptedException interrupted) {return false;}
 
         boolean tokenRemoved = removeToken(player.id, slot);
         if(tokenRemoved){
             player.tokenRemove(slot);
+            env.journal.record(Journal.Event.TOKEN_REMOVED, player.id, slot, slotToCard[slot], boardVersion(), env.clock.currentTimeMillis());
         }
     
         sem.release();
         return tokenRemoved;
     }
 
+    /**
+     * @return - the version of the board (changes whenever a card is placed or removed).
+     */
+    public long boardVersion(){
+        return boardVersion;
+    }
+
     public Integer cardToSlot(Integer card){
         return cardToSlot[card];
     }
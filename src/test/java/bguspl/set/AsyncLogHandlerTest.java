@@ -0,0 +1,108 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogHandlerTest {
+
+    private static class ListHandler extends Handler {
+
+        final List<LogRecord> records = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        volatile CountDownLatch gate = new CountDownLatch(0);
+        final CountDownLatch entered = new CountDownLatch(1);
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException ignored) {
+            }
+            records.add(record);
+            threads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    void publish_AllRecordsWrittenInOrderOnWriterThread() throws InterruptedException {
+        ListHandler target = new ListHandler();
+        AsyncLogHandler handler = new AsyncLogHandler(target, 1 << 16);
+        int threads = 4, perThread = 5000;
+
+        Thread[] loggers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            loggers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    LogRecord record = new LogRecord(Level.INFO, "record {0} {1}");
+                    record.setParameters(new Object[]{id, i});
+                    handler.publish(record);
+                }
+            });
+            loggers[t].start();
+        }
+        for (Thread logger : loggers) logger.join();
+        handler.flush();
+
+        synchronized (target) {
+            assertEquals(threads * perThread, target.records.size());
+            int[] next = new int[threads];
+            for (LogRecord record : target.records) {
+                int id = (Integer) record.getParameters()[0];
+                assertEquals(next[id]++, record.getParameters()[1]);
+            }
+            assertTrue(target.threads.stream().allMatch(thread -> thread.getName().equals("log-writer")));
+        }
+        handler.close();
+    }
+
+    @Test
+    void publish_FullBufferDropsInsteadOfBlocking() throws InterruptedException {
+        ListHandler target = new ListHandler();
+        target.gate = new CountDownLatch(1);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 8);
+        handler.publish(new LogRecord(Level.INFO, "stuck"));
+        target.entered.await(); // the writer is stuck on the first record
+
+        for (int i = 0; i < 100; i++)
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        target.gate.countDown();
+        handler.flush();
+        handler.close();
+
+        synchronized (target) {
+            // the stuck record, a full buffer, and a warning about the dropped ones
+            assertEquals(1 + 8 + 1, target.records.size());
+            LogRecord last = target.records.get(target.records.size() - 1);
+            assertEquals(Level.WARNING, last.getLevel());
+            assertTrue(last.getMessage().startsWith("log buffer full, dropped "));
+        }
+    }
+
+    @Test
+    void formatMessage_ReplacesParameters() {
+        LogFormatter formatter = new LogFormatter("%3$s");
+        LogRecord record = new LogRecord(Level.INFO, "player {0} scored {1} at {2} ({x} {3})");
+        record.setParameters(new Object[]{3, 12000, "noon"});
+
+        assertEquals("player 3 scored 12000 at noon ({x} {3})", formatter.format(record));
+    }
+}
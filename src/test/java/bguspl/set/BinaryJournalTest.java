@@ -0,0 +1,55 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BinaryJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasRecorded() throws IOException {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "3");
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "2");
+        Config config = new Config(Logger.getAnonymousLogger(), properties);
+        Path path = dir.resolve("journal.bin");
+
+        int count = 10_000; // more than fits in the buffer
+        try (BinaryJournal journal = new BinaryJournal(path, config)) {
+            journal.record(Journal.Event.SEED, -1, -1, -1, Long.MIN_VALUE + 1);
+            for (int i = 1; i < count; ++i)
+                journal.record(Journal.Event.TOKEN_PLACED, i % 3, i % 6, i % 81, i);
+        }
+
+        List<BinaryJournal.Record> records = new ArrayList<>();
+        List<BinaryJournal.Header> headers = new ArrayList<>();
+        BinaryJournal.read(path, headers::add, records::add);
+
+        assertEquals(1, headers.size());
+        assertEquals(2, headers.get(0).rows);
+        assertEquals(3, headers.get(0).columns);
+        assertEquals(3, headers.get(0).players);
+        assertEquals(count, records.size());
+        assertEquals(Journal.Event.SEED, records.get(0).event);
+        assertEquals(Long.MIN_VALUE + 1, records.get(0).time);
+        BinaryJournal.Record last = records.get(count - 1);
+        assertEquals(Journal.Event.TOKEN_PLACED, last.event);
+        assertEquals((count - 1) % 3, last.player);
+        assertEquals((count - 1) % 6, last.slot);
+        assertEquals((count - 1) % 81, last.card);
+        assertEquals(count - 1, last.time);
+    }
+}
@@ -0,0 +1,32 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CardAtlasTest {
+
+    @Test
+    void image_SameAsPng() throws IOException {
+        CardAtlas atlas = CardAtlas.load();
+        assertNotNull(atlas, "the atlas is generated in the process-classes phase");
+
+        for (String name : new String[]{"0000.png", "1212.png", "2222.png", "empty_card.png"}) {
+            BufferedImage expected = ImageIO.read(getClass().getClassLoader().getResource("cards/" + name));
+            BufferedImage actual = atlas.image(name);
+            assertNotNull(actual);
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+            for (int y = 0; y < expected.getHeight(); y += 7)
+                for (int x = 0; x < expected.getWidth(); x += 7)
+                    assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+        }
+        assertNull(atlas.image("missing.png"));
+    }
+}
@@ -0,0 +1,79 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardImageCacheTest {
+
+    private final ConcurrentHashMap<Integer, CountDownLatch> loaded = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private CardImageCache cache;
+
+    private CardImageCache cache(int capacity) {
+        cache = new CardImageCache(Logger.getAnonymousLogger(), card -> {
+            loads.incrementAndGet();
+            return new BufferedImage(10 + card, 20, BufferedImage.TYPE_INT_RGB);
+        }, 5, 4, capacity, card -> latch(card).countDown());
+        return cache;
+    }
+
+    private CountDownLatch latch(int card) {
+        return loaded.computeIfAbsent(card, c -> new CountDownLatch(1));
+    }
+
+    private void awaitLoaded(int card) throws InterruptedException {
+        assertTrue(latch(card).await(5, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void get_LoadsLazilyAndScales() throws InterruptedException {
+        cache(4);
+
+        assertNull(cache.get(1));
+        awaitLoaded(1);
+
+        BufferedImage image = cache.get(1);
+        assertNotNull(image);
+        assertEquals(5, image.getWidth());
+        assertEquals(4, image.getHeight());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void prefetch_EvictsLeastRecentlyUsed() throws InterruptedException {
+        cache(2);
+
+        cache.prefetch(0);
+        awaitLoaded(0);
+        cache.prefetch(1);
+        awaitLoaded(1);
+        assertNotNull(cache.get(0)); // now card 1 is the least recently used
+        cache.prefetch(2);
+        awaitLoaded(2);
+
+        assertNotNull(cache.get(0));
+        assertNotNull(cache.get(2));
+        assertEquals(3, loads.get());
+        loaded.remove(1);
+        assertNull(cache.get(1));
+        awaitLoaded(1);
+        assertEquals(4, loads.get());
+    }
+}
@@ -0,0 +1,38 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class CardRendererTest {
+
+    private static boolean samePixels(BufferedImage a, BufferedImage b) {
+        for (int y = 0; y < a.getHeight(); y++)
+            for (int x = 0; x < a.getWidth(); x++)
+                if (a.getRGB(x, y) != b.getRGB(x, y)) return false;
+        return true;
+    }
+
+    @Test
+    void render_EveryFeatureIsVisible() {
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", "6");
+        properties.setProperty("FeatureSize", "5");
+        properties.setProperty("LogLevel", "OFF");
+        Config config = new Config(Logger.getAnonymousLogger(), properties);
+        CardRenderer renderer = new CardRenderer(config, new UtilImpl(config), 120, 80);
+
+        BufferedImage card = renderer.render(0);
+        assertEquals(120, card.getWidth());
+        assertEquals(80, card.getHeight());
+
+        // changing any single feature (the last one is the least significant digit) changes the image
+        for (int feature = 0, weight = 1; feature < config.featureCount; feature++, weight *= config.featureSize)
+            assertFalse(samePixels(card, renderer.render(weight)), "feature " + feature);
+    }
+}
@@ -0,0 +1,51 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DealAnalyzerTest {
+
+    private static final long SEED = 17;
+
+    private final DealAnalyzer analyzer;
+
+    DealAnalyzerTest() {
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "3");
+        analyzer = new DealAnalyzer(new Config(Logger.getAnonymousLogger(), properties));
+    }
+
+    private static void assertSameHistogram(DealAnalyzer.Histogram expected, DealAnalyzer.Histogram actual) {
+        assertEquals(expected.total(), actual.total());
+        assertEquals(expected.mean(), actual.mean());
+        assertEquals(expected.maxValue(), actual.maxValue());
+        for (int value = 0; value <= expected.maxValue(); value++)
+            assertEquals(expected.probability(value), actual.probability(value), "value " + value);
+    }
+
+    @Test
+    void analyzeDeals_CountsEveryDealOnceAndIsReproducible() {
+        int deals = 20_000; // split into a few tasks
+        DealAnalyzer.Histogram histogram = analyzer.analyzeDeals(deals, SEED);
+
+        assertEquals(deals, histogram.total());
+        double probabilities = 0;
+        for (int sets = 0; sets <= histogram.maxValue(); sets++) probabilities += histogram.probability(sets);
+        assertEquals(1, probabilities, 1e-9);
+        assertSameHistogram(histogram, analyzer.analyzeDeals(deals, SEED));
+    }
+
+    @Test
+    void analyzeGames_CountsEveryGameOnceAndIsReproducible() {
+        int games = 200;
+        DealAnalyzer.Histogram histogram = analyzer.analyzeGames(games, SEED);
+
+        assertEquals(games, histogram.total());
+        assertSameHistogram(histogram, analyzer.analyzeGames(games, SEED));
+    }
+}
@@ -0,0 +1,68 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameReplayerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replay_ReachesTheRecordedScores() throws IOException, InterruptedException {
+        Properties properties = new Properties();
+        properties.put("LogLevel", Level.OFF.getName());
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        properties.put("ComputerStrategy", Config.STRATEGY_SOLVER);
+        properties.put("ComputerReactionSeconds", "0.2");
+        properties.put("FeatureCount", "3");
+        properties.put("TurnTimeoutSeconds", "5");
+        properties.put("TurnTimeoutWarningSeconds", "0");
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("Seed", "42");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Path path = dir.resolve("journal.bin");
+
+        // record a game in simulated time
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util, new VirtualClock(),
+                new BinaryJournal(path, config));
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
+        dealerThread.startWithLog();
+        dealerThread.join(30_000);
+        assertFalse(dealerThread.isAlive(), "the game did not end");
+        env.journal.close();
+
+        GameReplayer.Result result = new GameReplayer(path).replay();
+
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++) scores[i] = players[i].score();
+        assertTrue(result.reproduced(), result.mismatches.toString());
+        assertArrayEquals(scores, result.recordedScores);
+        assertArrayEquals(scores, result.scores);
+        assertTrue(result.events > 0);
+    }
+}
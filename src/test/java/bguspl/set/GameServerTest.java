@@ -0,0 +1,126 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import bguspl.set.ex.Player;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class GameServerTest {
+
+    private final Logger logger = Logger.getAnonymousLogger();
+    private GameServer server;
+
+    private Config config(String strategy, String turnTimeoutSeconds) {
+        return config(strategy, turnTimeoutSeconds, false);
+    }
+
+    private Config config(String strategy, String turnTimeoutSeconds, boolean virtualTime) {
+        Properties properties = new Properties();
+        properties.put("LogLevel", Level.OFF.getName());
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        properties.put("ComputerStrategy", strategy);
+        properties.put("ComputerPressesPerSecond", "1000");
+        properties.put("ComputerReactionSeconds", "0");
+        properties.put("FeatureCount", "3");
+        properties.put("TurnTimeoutSeconds", turnTimeoutSeconds);
+        properties.put("TurnTimeoutWarningSeconds", "0");
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("VirtualTime", Boolean.toString(virtualTime));
+        return new Config(logger, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void games_PlayedConcurrentlyOnSharedThreads() throws InterruptedException {
+        Config config = config(Config.STRATEGY_SOLVER, "1");
+        assertEquals(1, GameServer.loops(config)); // the dealer, the players run on the scheduler
+        server = new GameServer(logger, 4 * GameServer.loops(config), 2);
+
+        List<GameServer.Game> games = new ArrayList<>();
+        for (int i = 0; i < 4; i++) games.add(server.create(config, players -> null));
+        for (GameServer.Game game : games) {
+            assertTrue(game.await(30, TimeUnit.SECONDS), "game " + game.id);
+            assertEquals(GameServer.State.FINISHED, game.state());
+            assertTrue(Arrays.stream(game.players).mapToInt(Player::score).sum() > 0);
+        }
+        assertTrue(server.games().isEmpty());
+    }
+
+    @Test
+    void virtualTimeGames_KeepALoopPerPlayer() throws InterruptedException {
+        Config config = config(Config.STRATEGY_SOLVER, "1", true);
+        assertEquals(1 + 3 + 3, GameServer.loops(config)); // the dealer, the players and their solvers
+        server = new GameServer(logger, GameServer.loops(config), 1);
+
+        GameServer.Game game = server.create(config, players -> null);
+        assertTrue(game.await(30, TimeUnit.SECONDS));
+        assertEquals(GameServer.State.FINISHED, game.state());
+        assertTrue(Arrays.stream(game.players).mapToInt(Player::score).sum() > 0);
+    }
+
+    @Test
+    void create_RejectedWhenThereAreNoThreadsLeft() throws InterruptedException {
+        Config config = config(Config.STRATEGY_RANDOM, "0.5");
+        server = new GameServer(logger, GameServer.loops(config), 1);
+        GameServer.Game game = server.create(config, players -> null);
+        assertThrows(RejectedExecutionException.class, () -> server.create(config, players -> null));
+
+        game.terminate();
+        assertTrue(game.await(10, TimeUnit.SECONDS));
+        assertEquals(GameServer.State.TERMINATED, game.state());
+        server.create(config, players -> null); // its threads were given back
+    }
+
+    @Test
+    void drain_EndsTheGamesAfterTheirRound() throws InterruptedException {
+        Config config = config(Config.STRATEGY_RANDOM, "0.5");
+        server = new GameServer(logger, 2 * GameServer.loops(config), 1);
+        GameServer.Game first = server.create(config, players -> null), second = server.create(config, players -> null);
+
+        server.drain();
+        assertThrows(RejectedExecutionException.class, () -> server.create(config, players -> null));
+        assertTrue(server.awaitGames(10, TimeUnit.SECONDS));
+        assertEquals(GameServer.State.FINISHED, first.state());
+        assertEquals(GameServer.State.FINISHED, second.state());
+    }
+
+    @Test
+    void failingGame_DoesNotAffectTheOthers() throws InterruptedException {
+        Config config = config(Config.STRATEGY_SOLVER, "1");
+        server = new GameServer(logger, 2 * GameServer.loops(config), 2);
+        UserInterface broken = mock(UserInterface.class);
+        doThrow(new IllegalStateException("broken")).when(broken).setScore(anyInt(), anyInt());
+
+        GameServer.Game failing = server.create(config, players -> broken);
+        GameServer.Game healthy = server.create(config, players -> null);
+
+        assertTrue(failing.await(30, TimeUnit.SECONDS));
+        assertEquals(GameServer.State.FAILED, failing.state());
+        assertEquals("broken", failing.failure().getMessage());
+        assertTrue(healthy.await(30, TimeUnit.SECONDS));
+        assertEquals(GameServer.State.FINISHED, healthy.state());
+    }
+}
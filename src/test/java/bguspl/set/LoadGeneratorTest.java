@@ -0,0 +1,33 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadGeneratorTest {
+
+    @Test
+    void run_ClaimsOfManyBotsAreJudged() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("LogLevel", Level.OFF.getName());
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "300");
+        properties.put("Hints", "False");
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("TableDelaySeconds", "0");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        LoadGenerator generator = new LoadGenerator(logger, new Config(logger, properties), 100, 20, 0.5);
+
+        generator.run(1500);
+
+        assertTrue(generator.verdicts() > 0);
+        // a stale claim is discarded without a verdict (the claims still queued when a game ends get neither)
+        assertTrue(generator.staleClaims() <= generator.claims() - generator.verdicts());
+    }
+}
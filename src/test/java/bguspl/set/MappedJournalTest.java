@@ -0,0 +1,62 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatConcurrentWritersRecorded() throws IOException, InterruptedException {
+        int threads = 4, perThread = 5000;
+        MappedJournal journal = new MappedJournal(dir, 4096); // a little over 100 records per segment
+
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int player = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++)
+                    journal.record(Journal.Event.TOKEN_PLACED, player, i % 12, i, 1000L + i, i);
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) writer.join();
+        journal.close();
+        journal.record(Journal.Event.SCORE, 0, -1, 0, -1); // ignored after closing
+
+        long segments;
+        try (Stream<Path> files = Files.list(dir)) {
+            segments = files.count();
+        }
+        assertTrue(segments > (long) threads * perThread / 200, "rolled over " + segments);
+
+        List<MappedJournal.Record> records = new ArrayList<>();
+        MappedJournal.read(dir, records::add);
+
+        assertEquals(threads * perThread, records.size());
+        int[] next = new int[threads];
+        long sequence = -1;
+        for (MappedJournal.Record record : records) {
+            assertTrue(record.sequence > sequence);
+            sequence = record.sequence;
+            assertEquals(Journal.Event.TOKEN_PLACED, record.event);
+            int i = next[record.player]++;
+            assertEquals(i, record.card);
+            assertEquals(i % 12, record.slot);
+            assertEquals(1000L + i, record.boardVersion);
+            assertEquals(i, record.time);
+        }
+    }
+}
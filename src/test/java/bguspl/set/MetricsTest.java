@@ -0,0 +1,54 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    @Test
+    void histogram_PercentilesWithinABucket() {
+        Metrics metrics = new Metrics();
+        Metrics.Histogram histogram = metrics.histogram("latency");
+        for (int value = 1; value <= 1000; value++) histogram.record(value);
+
+        assertEquals(1000, histogram.count());
+        assertEquals(500.5, histogram.mean(), 1e-9);
+        assertEquals(1000, histogram.max());
+        long median = histogram.percentile(50);
+        assertTrue(median >= 500 && median < 1000, "p50 " + median);
+        assertEquals(1000, histogram.percentile(100));
+    }
+
+    @Test
+    void register_PublishesTheSnapshot() throws JMException {
+        Metrics metrics = new Metrics();
+        metrics.counter("points").add(3);
+        metrics.gauge("depth", () -> 7);
+        metrics.histogram("wait").record(0);
+
+        Map<String, Object> snapshot = metrics.snapshot();
+        assertEquals(3L, snapshot.get("points"));
+        assertEquals(7L, snapshot.get("depth"));
+        assertEquals(1L, snapshot.get("wait.count"));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = ObjectName.getInstance("bguspl.set:type=Metrics,name=" + ObjectName.quote("test"));
+        metrics.register("test");
+        try {
+            assertEquals(3L, server.getAttribute(name, "points"));
+            assertEquals(0L, server.getAttribute(name, "wait.max"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
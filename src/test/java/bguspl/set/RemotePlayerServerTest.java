@@ -0,0 +1,158 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class RemotePlayerServerTest {
+
+    private final Player[] players = {mock(Player.class), mock(Player.class), mock(Player.class)};
+    private final List<Client> clients = new ArrayList<>();
+    private RemotePlayerServer server;
+
+    /**
+     * A blocking test client.
+     */
+    private class Client {
+        final Socket socket;
+        final DataInputStream input;
+        final BoardState state = new BoardState(0, 0, 0);
+        final int seat;
+
+        Client() throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+            socket.setSoTimeout(5000);
+            input = new DataInputStream(socket.getInputStream());
+            seat = WireProtocol.readHello(next());
+            state.read(next()); // the snapshot
+        }
+
+        ByteBuffer next() throws IOException {
+            byte[] message = new byte[input.readUnsignedShort()];
+            input.readFully(message);
+            return ByteBuffer.wrap(message);
+        }
+
+        void press(int... slots) throws IOException {
+            ByteBuffer out = ByteBuffer.allocate(16 * slots.length);
+            for (int slot : slots) WireProtocol.writeKey(out, slot);
+            socket.getOutputStream().write(out.array(), 0, out.position());
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "1");
+        properties.put("RemoteTicksPerSecond", "100");
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        server = new RemotePlayerServer(logger, config, players, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new SystemClock());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.dispose();
+        for (Client client : clients) client.socket.close();
+    }
+
+    private Client connect() throws IOException {
+        Client client = new Client();
+        clients.add(client);
+        return client;
+    }
+
+    @Test
+    void keyPresses_GoToThePlayerOfTheSeat() throws IOException {
+        Client first = connect(), second = connect(), spectator = connect();
+        assertEquals(0, first.seat);
+        assertEquals(1, second.seat);
+        assertEquals(-1, spectator.seat);
+        assertEquals(3, first.state.rows());
+        assertEquals(4, first.state.columns());
+
+        spectator.press(5); // a spectator cannot press keys
+        first.press(3, 7, 200); // 200 is not a slot
+        second.press(11);
+
+        verify(players[0], timeout(5000)).keyPressed(3);
+        verify(players[0], timeout(5000)).keyPressed(7);
+        verify(players[1], timeout(5000)).keyPressed(11);
+        verify(players[0], never()).keyPressed(5);
+        verify(players[0], never()).keyPressed(200);
+        verify(players[1], never()).keyPressed(5);
+        verify(players[2], never()).keyPressed(anyInt());
+    }
+
+    @Test
+    void seat_FreedWhenThePlayerDisconnects() throws IOException, InterruptedException {
+        connect();
+        connect();
+        clients.remove(0).socket.close();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        Client client;
+        while ((client = connect()).seat != 0 && System.currentTimeMillis() < deadline) {
+            assertEquals(-1, client.seat); // until the disconnection is noticed
+            clients.remove(client);
+            client.socket.close();
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.seat);
+    }
+
+    @Test
+    void changes_SentToAllClientsAndToJoiners() throws IOException {
+        List<Client> watchers = new ArrayList<>();
+        for (int i = 0; i < 200; i++) watchers.add(connect());
+
+        server.placeCard(17, 5);
+        server.placeToken(1, 5);
+        server.setFreeze(1, 3000);
+        server.announceWinner(new int[]{0, 1});
+        watchers.add(connect()); // may join before or after the frame, either way it sees the same
+
+        for (Client client : watchers) {
+            while (client.state.winners() == null)
+                client.state.read(client.next());
+            assertEquals(17, client.state.card(5));
+            assertArrayEquals(new int[]{1}, client.state.tokens(5));
+            assertEquals(3000, client.state.freeze(1));
+            assertArrayEquals(new int[]{0, 1}, client.state.winners());
+        }
+    }
+
+    @Test
+    void constructor_RejectsAGameWhoseSnapshotMayNotFitInAMessage() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "1000");
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        assertThrows(IllegalArgumentException.class, () -> new RemotePlayerServer(logger, config, new Player[config.players],
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new SystemClock()));
+    }
+}
@@ -0,0 +1,77 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuntimeSettingsTest {
+
+    private static RuntimeSettings settings(String turnTimeoutSeconds) {
+        Properties properties = new Properties();
+        properties.put("TurnTimeoutSeconds", turnTimeoutSeconds);
+        properties.put("PointFreezeSeconds", "1");
+        return new RuntimeSettings(new Config(Logger.getAnonymousLogger(), properties));
+    }
+
+    @Test
+    void set_ConcurrentChangesAreNotLost() throws InterruptedException {
+        RuntimeSettings settings = settings("60");
+        int changes = 10000;
+        Thread points = new Thread(() -> {
+            for (int i = 1; i <= changes; i++) settings.setPointFreezeMillis(i);
+        });
+        Thread penalties = new Thread(() -> {
+            for (int i = 1; i <= changes; i++) settings.setPenaltyFreezeMillis(i);
+        });
+        points.start();
+        penalties.start();
+        points.join();
+        penalties.join();
+
+        RuntimeSettings.Snapshot snapshot = settings.get();
+        assertEquals(2 * changes, snapshot.version);
+        assertEquals(changes, snapshot.pointFreezeMillis);
+        assertEquals(changes, snapshot.penaltyFreezeMillis);
+        assertEquals(60000, snapshot.turnTimeoutMillis);
+    }
+
+    @Test
+    void set_InvalidValuesAreRejected() {
+        RuntimeSettings settings = settings("60");
+        assertThrows(IllegalArgumentException.class, () -> settings.setTableDelayMillis(-1));
+        assertThrows(IllegalArgumentException.class, () -> settings.setTurnTimeoutMillis(0));
+        settings.setTurnTimeoutMillis(30000);
+
+        assertEquals(1, settings.get().version);
+        assertEquals(30000, settings.get().turnTimeoutMillis);
+        assertEquals(1000, settings.get().pointFreezeMillis);
+    }
+
+    @Test
+    void register_ChangesOverJmx() throws JMException {
+        RuntimeSettings settings = settings("-1");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = ObjectName.getInstance("bguspl.set:type=Settings,name=" + ObjectName.quote("test"));
+        settings.register("test");
+        try {
+            server.setAttribute(name, new Attribute("PenaltyFreezeMillis", 250L));
+            server.setAttribute(name, new Attribute("Hints", true));
+
+            assertEquals(250L, server.getAttribute(name, "PenaltyFreezeMillis"));
+            assertEquals(2L, server.getAttribute(name, "Version"));
+            assertTrue(settings.get().hints);
+        } finally {
+            settings.unregister();
+        }
+    }
+}
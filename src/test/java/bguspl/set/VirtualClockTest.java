@@ -0,0 +1,70 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualClockTest {
+
+    @Test
+    void sleep_TurnTimeoutPassesInstantly() throws InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        long realStart = System.nanoTime();
+
+        clock.sleep(60_000);
+
+        assertEquals(60_000, clock.currentTimeMillis());
+        assertTrue(System.nanoTime() - realStart < 1_000_000_000L);
+    }
+
+    @Test
+    void poll_EmptyQueueTimesOut() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(1000);
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(1);
+
+        assertNull(clock.poll(queue, 500));
+        assertEquals(1500, clock.currentTimeMillis());
+    }
+
+    @Test
+    void poll_ElementAvailable() throws InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(1);
+        queue.add(7);
+
+        assertEquals(7, clock.poll(queue, 500));
+        assertEquals(0, clock.currentTimeMillis());
+    }
+
+    @Test
+    void sleep_TwoThreadsWakeUpInOrder() throws InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        long[] wokeAt = new long[2];
+        Thread first = new Thread(() -> {
+            try {
+                clock.sleep(3000);
+                wokeAt[0] = clock.currentTimeMillis();
+            } catch (InterruptedException ignored) {}
+        });
+        Thread second = new Thread(() -> {
+            try {
+                clock.sleep(1000);
+                wokeAt[1] = clock.currentTimeMillis();
+            } catch (InterruptedException ignored) {}
+        });
+        clock.register(first);
+        clock.register(second);
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+
+        assertEquals(3000, wokeAt[0]);
+        assertEquals(1000, wokeAt[1]);
+    }
+}
@@ -0,0 +1,238 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WireProtocolTest {
+
+    private static final int ROWS = 3, COLUMNS = 4, PLAYERS = 6;
+
+    private static void assertSameState(BoardState expected, BoardState actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        assertEquals(expected.players(), actual.players());
+        assertEquals(expected.tick(), actual.tick());
+        for (int slot = 0; slot < expected.rows() * expected.columns(); slot++) {
+            assertEquals(expected.card(slot), actual.card(slot), "card of slot " + slot);
+            assertArrayEquals(expected.tokens(slot), actual.tokens(slot), "tokens of slot " + slot);
+        }
+        for (int player = 0; player < expected.players(); player++) {
+            assertEquals(expected.score(player), actual.score(player));
+            assertEquals(expected.freeze(player), actual.freeze(player));
+        }
+        assertEquals(expected.timerMode(), actual.timerMode());
+        assertEquals(expected.timerMillies(), actual.timerMillies());
+        assertEquals(expected.timerArgument(), actual.timerArgument());
+        assertArrayEquals(expected.winners(), actual.winners());
+    }
+
+    /**
+     * Makes a random user interface call.
+     */
+    private static void randomCall(BoardState state, Random random) {
+        int slot = random.nextInt(ROWS * COLUMNS), player = random.nextInt(PLAYERS);
+        switch (random.nextInt(10)) {
+            case 0: state.placeCard(random.nextInt(81), slot); break;
+            case 1: state.removeCard(slot); break;
+            case 2: case 3: state.placeToken(player, slot); break;
+            case 4: state.removeToken(player, slot); break;
+            case 5: state.removeTokens(slot); break;
+            case 6: state.setScore(player, random.nextInt(100)); break;
+            case 7: state.setFreeze(player, random.nextInt(2) == 0 ? 0 : random.nextInt(60000)); break;
+            case 8: state.setCountdown(random.nextInt(60000), random.nextBoolean()); break;
+            default: state.setElapsed(random.nextInt(Integer.MAX_VALUE) * 1000L); break;
+        }
+    }
+
+    /**
+     * Reads all the messages of a buffer into a client state.
+     */
+    private static int readAll(ByteBuffer in, BoardState client) throws IOException {
+        int messages = 0;
+        for (ByteBuffer message = WireProtocol.next(in); message != null; message = WireProtocol.next(in)) {
+            client.read(message);
+            ++messages;
+        }
+        return messages;
+    }
+
+    @Test
+    void frames_ReproduceTheServerState() throws IOException {
+        Random random = new Random(7);
+        BoardState server = new BoardState(ROWS, COLUMNS, PLAYERS);
+        BoardState client = new BoardState(0, 0, 0);
+        BoardState joiner = new BoardState(0, 0, 0);
+        ByteBuffer buffer = ByteBuffer.allocate(WireProtocol.MAX_MESSAGE_BYTES);
+
+        server.writeSnapshot(buffer);
+        buffer.flip();
+        assertEquals(1, readAll(buffer, client));
+
+        for (int tick = 0; tick < 1000; tick++) {
+            for (int calls = random.nextInt(20); calls > 0; calls--) randomCall(server, random);
+            buffer.clear();
+            boolean changed = server.changed();
+            assertEquals(changed, server.writeFrame(buffer));
+            buffer.flip();
+            assertEquals(changed ? 1 : 0, readAll(buffer, client));
+            assertFalse(server.changed());
+            assertSameState(server, client);
+
+            if (tick == 500) { // a client that joins in the middle of the game
+                buffer.clear();
+                server.writeSnapshot(buffer);
+                buffer.flip();
+                readAll(buffer, joiner);
+            } else if (tick > 500 && changed) {
+                buffer.flip();
+                readAll(buffer, joiner);
+            }
+        }
+        server.announceWinner(new int[]{1, 4});
+        buffer.clear();
+        server.writeFrame(buffer);
+        buffer.flip();
+        readAll(buffer.duplicate(), client);
+        readAll(buffer, joiner);
+
+        assertSameState(server, client);
+        assertSameState(server, joiner);
+    }
+
+    @Test
+    void frame_HoldsTheLastValueOfEachChange() throws IOException {
+        BoardState server = new BoardState(ROWS, COLUMNS, PLAYERS);
+        ByteBuffer buffer = ByteBuffer.allocate(WireProtocol.MAX_MESSAGE_BYTES);
+        for (int i = 0; i < 1000; i++) { // a storm of presses on the same slot
+            server.placeToken(i % PLAYERS, 3);
+            server.removeToken(i % PLAYERS, 3);
+        }
+        server.placeToken(2, 3);
+        server.writeFrame(buffer);
+
+        // length, type, tick, 1 slot (slot, card, 1 token, player), no players, no timer, no winners
+        assertEquals(2 + 1 + 1 + 1 + 4 + 1 + 1 + 1, buffer.position());
+        buffer.flip();
+        BoardState client = new BoardState(ROWS, COLUMNS, PLAYERS);
+        readAll(buffer, client);
+        assertArrayEquals(new int[]{2}, client.tokens(3));
+    }
+
+    @Test
+    void runningCountdown_SentAsTheTimeRemaining() throws IOException, InterruptedException {
+        BoardState server = new BoardState(ROWS, COLUMNS, PLAYERS);
+        server.startCountdown(60000, 5000);
+        Thread.sleep(50);
+        ByteBuffer buffer = ByteBuffer.allocate(WireProtocol.MAX_MESSAGE_BYTES);
+        server.writeSnapshot(buffer);
+        buffer.flip();
+        BoardState client = new BoardState(0, 0, 0);
+        readAll(buffer, client);
+
+        assertEquals(BoardState.TIMER_RUNNING, client.timerMode());
+        assertTrue(client.timerMillies() <= 60000 - 50, "remaining " + client.timerMillies());
+        assertEquals(5000, client.timerArgument());
+    }
+
+    @Test
+    void runningCountdown_MeasuredOnTheGameClock() throws IOException, InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        BoardState server = new BoardState(ROWS, COLUMNS, PLAYERS, clock);
+        server.startCountdown(60000, 5000);
+        clock.sleep(5000); // simulated time, which passes at once
+        ByteBuffer buffer = ByteBuffer.allocate(WireProtocol.MAX_MESSAGE_BYTES);
+        server.writeSnapshot(buffer);
+        buffer.flip();
+        BoardState client = new BoardState(0, 0, 0);
+        readAll(buffer, client);
+
+        assertEquals(60000 - 5000, client.timerMillies());
+    }
+
+    @Test
+    void next_WaitsForTheWholeMessage() throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(64);
+        WireProtocol.writeHello(out, 3);
+        WireProtocol.writeKey(out, 11);
+        out.flip();
+
+        ByteBuffer in = ByteBuffer.allocate(64);
+        int messages = 0;
+        while (out.hasRemaining()) { // one byte at a time
+            in.put(out.get());
+            in.flip();
+            ByteBuffer message = WireProtocol.next(in);
+            if (message != null) {
+                if (messages++ == 0)
+                    assertEquals(3, WireProtocol.readHello(message));
+                else {
+                    assertEquals(WireProtocol.KEY, message.get());
+                    assertEquals(11, WireProtocol.getVarint(message));
+                }
+            }
+            in.compact();
+        }
+        assertEquals(2, messages);
+        in.flip();
+        assertNull(WireProtocol.next(in));
+    }
+
+    @Test
+    void readHello_RejectsAnotherVersion() throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(16);
+        int start = WireProtocol.begin(out, WireProtocol.HELLO);
+        WireProtocol.putVarint(out, WireProtocol.VERSION + 1);
+        WireProtocol.putSignedVarint(out, 0);
+        WireProtocol.end(out, start);
+        out.flip();
+
+        ByteBuffer message = WireProtocol.next(out);
+        assertThrows(IOException.class, () -> WireProtocol.readHello(message));
+    }
+
+    @Test
+    void varints_RoundTrip() throws IOException {
+        int[] ints = {0, 1, -1, 63, 64, 127, 128, 300, -300, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        long[] longs = {0, 1, -1, 1L << 35, -(1L << 40), Long.MAX_VALUE, Long.MIN_VALUE};
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        for (int value : ints) WireProtocol.putSignedVarint(buffer, value);
+        for (long value : longs) WireProtocol.putSignedVarlong(buffer, value);
+        int position = buffer.position();
+        WireProtocol.putVarint(buffer, 127);
+        assertEquals(position + 1, buffer.position());
+        buffer.flip();
+        for (int value : ints) assertEquals(value, WireProtocol.getSignedVarint(buffer));
+        for (long value : longs) assertEquals(value, WireProtocol.getSignedVarlong(buffer));
+        assertEquals(127, WireProtocol.getVarint(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void bufferPool_ReusesReleasedBuffers() {
+        BufferPool pool = new BufferPool(64, 4);
+        BufferPool.Buffer buffer = pool.acquire();
+        buffer.buffer.putInt(42);
+        buffer.retain();
+        buffer.release();
+        assertTrue(pool.acquire() != buffer); // still referenced
+        buffer.release();
+
+        BufferPool.Buffer reused = pool.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.buffer.position());
+        assertEquals(2, pool.allocated());
+        reused.release();
+        assertThrows(IllegalStateException.class, reused::retain);
+    }
+}
@@ -0,0 +1,110 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoardSolverTest {
+
+    private Env env;
+    private Table table;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("TableDelaySeconds", "0");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        for (int slot = 0; slot < config.tableSize; ++slot)
+            table.placeCard(slot, slot); // cards 0, 1, 2 are a set, and so are 3, 4, 5 and so on
+    }
+
+    private long searches() {
+        return env.metrics.counter("solver.searches").get();
+    }
+
+    @Test
+    void snapshot_SearchedOncePerVersionWithConcurrentReaders() throws Exception {
+        int readers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        try {
+            List<Future<BoardSolver.Snapshot>> snapshots = new ArrayList<>();
+            for (int i = 0; i < readers; ++i)
+                snapshots.add(executor.submit(() -> {
+                    start.await();
+                    BoardSolver.Snapshot snapshot = null;
+                    for (int read = 0; read < 1000; ++read) snapshot = table.solver.snapshot();
+                    return snapshot;
+                }));
+            start.countDown();
+
+            Set<BoardSolver.Snapshot> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Future<BoardSolver.Snapshot> snapshot : snapshots) distinct.add(snapshot.get());
+            assertEquals(1, distinct.size());
+            assertEquals(1, searches());
+            assertEquals(table.boardVersion(), distinct.iterator().next().version);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void snapshot_SearchedAgainWhenTheBoardChanges() {
+        BoardSolver.Snapshot first = table.solver.snapshot();
+        assertTrue(first.size() >= 4);
+
+        table.removeCard(0);
+        BoardSolver.Snapshot removed = table.solver.snapshot();
+        assertNotSame(first, removed);
+        assertEquals(table.boardVersion(), removed.version);
+        assertEquals(2, searches());
+        for (int i = 0; i < removed.size(); ++i)
+            assertTrue(Arrays.stream(removed.set(i)).noneMatch(slot -> slot == 0));
+
+        table.placeCard(0, 0);
+        BoardSolver.Snapshot placed = table.solver.snapshot();
+        assertEquals(table.boardVersion(), placed.version);
+        assertEquals(first.size(), placed.size());
+        assertEquals(3, searches());
+        assertEquals(placed, table.solver.snapshot()); // not searched again for the same version
+        assertEquals(3, searches());
+    }
+
+    @Test
+    void setFor_SpreadGivesDifferentPlayersDifferentSets() {
+        BoardSolver.Snapshot snapshot = table.solver.snapshot();
+        Random random = new Random(1);
+        Set<String> sets = new HashSet<>();
+        for (int player = 0; player < snapshot.size(); ++player) {
+            int[] set = snapshot.setFor(player, true, random);
+            Arrays.sort(set);
+            sets.add(Arrays.toString(set));
+        }
+        assertEquals(snapshot.size(), sets.size());
+    }
+}
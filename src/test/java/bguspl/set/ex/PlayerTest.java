@@ -1,21 +1,37 @@
 package bguspl.set.ex;
 
+import bguspl.set.Clock;
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.GameExecutors;
+import bguspl.set.Journal;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -70,4 +86,77 @@ class PlayerTest {
         // check that ui.setScore was called with the player's id and the correct score
         verify(ui).setScore(eq(player.id), eq(expectedScore));
     }
-}
\ No newline at end of file
+
+    /**
+     * A clock that only records how long it was asked to sleep.
+     */
+    private static class SleepRecordingClock implements Clock {
+
+        final List<Long> sleeps = new ArrayList<>();
+
+        @Override
+        public long currentTimeMillis() {
+            return 0;
+        }
+
+        @Override
+        public void sleep(long millis) {
+            sleeps.add(millis);
+        }
+
+        @Override
+        public <T> T poll(BlockingQueue<T> queue, long millis) {
+            return queue.poll();
+        }
+    }
+
+    private Env computerEnv(String pressesPerSecond, Clock clock, Journal journal) {
+        Properties properties = new Properties();
+        properties.put("ComputerPressesPerSecond", pressesPerSecond);
+        return new Env(logger, new Config(logger, properties), ui, util, clock, journal);
+    }
+
+    @Test
+    void randomPresses_AtMostThePressRateAndSuspendedWhileTheInputIsStopped() {
+        AtomicInteger presses = new AtomicInteger();
+        Env env = computerEnv("250", new SleepRecordingClock(), (event, player, slot, card, time) -> {
+            if (event == Journal.Event.KEY_PRESS) presses.incrementAndGet();
+        });
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        when(dealer.executors()).thenReturn(new GameExecutors(logger, Runnable::run, scheduler, "", failure -> {}, false));
+        Player computer = new Player(env, dealer, table, 1, false);
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+        // every press is followed by a wait of at least a press interval (1/250 s)
+        computer.createArtificialIntelligence();
+        verify(scheduler).schedule(task.capture(), eq(4000L), eq(TimeUnit.MICROSECONDS));
+        task.getValue().run();
+        assertEquals(1, presses.get());
+        verify(scheduler, times(2)).schedule(any(Runnable.class), eq(4000L), eq(TimeUnit.MICROSECONDS));
+
+        // no presses while the input is stopped, and nothing is scheduled until it is resumed
+        computer.setStopInput(true);
+        task.getValue().run();
+        assertFalse(computer.keyPressed(0));
+        assertEquals(1, presses.get());
+        verify(scheduler, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+
+        // resuming schedules the presses once, however many times it is resumed
+        computer.setStopInput(false);
+        computer.setStopInput(false);
+        verify(scheduler, times(3)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        task.getValue().run();
+        assertEquals(2, presses.get());
+    }
+
+    @Test
+    void pressPause_CarriesTheSubMillisecondRemainderForward() throws InterruptedException {
+        SleepRecordingClock clock = new SleepRecordingClock();
+        Player computer = new Player(computerEnv("2500", clock, Journal.NONE), dealer, table, 1, false);
+
+        for (int i = 0; i < 10; i++)
+            computer.pressPause(); // 400 us each
+
+        assertEquals(List.of(0L, 0L, 1L, 0L, 1L, 0L, 0L, 1L, 0L, 1L), clock.sleeps);
+    }
+}
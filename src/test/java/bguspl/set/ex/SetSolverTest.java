@@ -0,0 +1,81 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SetSolverTest {
+
+    private Env env(String featureSize, String rows, String columns) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", featureSize);
+        properties.put("FeatureCount", "4");
+        properties.put("Rows", rows);
+        properties.put("Columns", columns);
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+
+    private static Set<String> asCardSets(List<int[]> sets, Integer[] slotToCard) {
+        return sets.stream().map(set -> Arrays.stream(set).map(slot -> slotToCard == null ? slot : slotToCard[slot])
+                .sorted().boxed().collect(Collectors.toList()).toString()).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private void assertSameSetsAsUtil(Env env, int deals) {
+        Util util = env.util;
+        SetSolver solver = new SetSolver(env);
+        Random random = new Random(7);
+        List<Integer> deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        for (int deal = 0; deal < deals; ++deal) {
+            Collections.shuffle(deck, random);
+            Integer[] slotToCard = new Integer[env.config.tableSize];
+            List<Integer> cards = new ArrayList<>();
+            for (int slot = 0; slot < slotToCard.length; ++slot)
+                if (random.nextInt(6) != 0) { // leave some slots empty
+                    slotToCard[slot] = deck.get(slot);
+                    cards.add(deck.get(slot));
+                }
+
+            Set<String> expected = asCardSets(util.findSets(cards, Integer.MAX_VALUE), null);
+            Set<String> actual = asCardSets(solver.findSets(slotToCard, Integer.MAX_VALUE), slotToCard);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void findSets_SameAsUtil_FeatureSize3() {
+        assertSameSetsAsUtil(env("3", "3", "4"), 300);
+    }
+
+    @Test
+    void findSets_SameAsUtil_FeatureSize4() {
+        assertSameSetsAsUtil(env("4", "4", "4"), 100);
+    }
+
+    @Test
+    void completion_IsTheMissingCard() {
+        Env env = env("3", "3", "4");
+        SetSolver solver = new SetSolver(env);
+        // features 0000 and 1120 -> 2210
+        int first = 0, second = 27 + 9 + 2 * 3;
+        int missing = solver.completion(new int[]{first, second});
+        assertEquals(2 * 27 + 2 * 9 + 3, missing);
+        assertEquals(true, env.util.testSet(new int[]{first, second, missing}));
+    }
+}
@@ -7,6 +7,15 @@ import bguspl.set.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
@@ -95,6 +104,29 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void placeCardsAndRemoveCards_RecordedByFlightRecorder(@TempDir Path dir) throws IOException {
+        List<Integer> deck = new ArrayList<>(Arrays.asList(10, 11, 12, 13, 14));
+        Path file = dir.resolve("table.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("bguspl.set.CardsPlaced");
+            recording.enable("bguspl.set.CardsRemoved");
+            recording.start();
+            table.placeCards(deck);
+            table.removeCards(new int[]{0, 1});
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(2, events.size());
+        assertEquals("bguspl.set.CardsPlaced", events.get(0).getEventType().getName());
+        assertEquals(4, events.get(0).getInt("cards"));
+        assertEquals(1, events.get(0).getInt("deckSize"));
+        assertEquals("bguspl.set.CardsRemoved", events.get(1).getEventType().getName());
+        assertEquals(2, events.get(1).getInt("cards"));
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}